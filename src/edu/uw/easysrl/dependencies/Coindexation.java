@@ -12,6 +12,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.carrotsearch.hppc.IntIntHashMap;
 
@@ -80,12 +81,18 @@ public class Coindexation implements Serializable {
 	 */
 	private static final long serialVersionUID = 1201129160464966099L;
 
-	private static final Map<Category, String> categoryToMarkedUpCategory = new HashMap<>();
+	private static final Map<Category, String> categoryToMarkedUpCategory = new ConcurrentHashMap<>();
+	private static final Set<String> loadedMarkedUpFiles = ConcurrentHashMap.newKeySet();
 
 	/**
-	 * Loads co-indexation information from the specified file.
+	 * Loads co-indexation information from the specified file. Files that were already loaded are skipped, so that
+	 * loading several models from the same folder only parses it once.
 	 */
 	public static void parseMarkedUpFile(final File file) throws IOException {
+		if (!loadedMarkedUpFiles.add(file.getCanonicalPath() + "@" + file.lastModified())) {
+			return;
+		}
+
 		final Iterator<String> lines = Util.readFileLineByLine(file);
 		while (lines.hasNext()) {
 			String line = lines.next();
@@ -94,8 +101,71 @@ public class Coindexation implements Serializable {
 			}
 			line = line.replaceAll(":B", "");
 
-			categoryToMarkedUpCategory.put(Category.valueOf(line), line);
+			final Category category = Category.valueOf(line);
+			categoryToMarkedUpCategory.put(category, line);
+			setTemplate(category, makeTemplate(line), true);
+		}
+	}
+
+	// Placeholder for the word in templates, which is replaced by the sentence position when they are instantiated.
+	private final static int TEMPLATE_HEAD = Integer.MIN_VALUE;
+	private final static List<Integer> TEMPLATE_HEAD_LIST = Collections.singletonList(TEMPLATE_HEAD);
+
+	/**
+	 * Co-indexations for each category, indexed by category ID, with the head word left as a placeholder. Entries are
+	 * filled lazily for categories that aren't in the markedup file.
+	 */
+	private static volatile Coindexation[] categoryToTemplate = new Coindexation[0];
+
+	private static Coindexation makeTemplate(final String markedUpCategory) {
+		return fromString(markedUpCategory, new Coindexation.IDorHead(TEMPLATE_HEAD_LIST), new HashMap<>(),
+				TEMPLATE_HEAD, true);
+	}
+
+	/**
+	 * Installs a template. Templates from the markedup file always replace the existing one, but a lazily built
+	 * template is only installed if the slot is still empty, so that it can't overwrite one parsed concurrently.
+	 *
+	 * @return the installed template
+	 */
+	private static synchronized Coindexation setTemplate(final Category category, final Coindexation template,
+			final boolean replace) {
+		if (category.getID() >= categoryToTemplate.length) {
+			categoryToTemplate = Arrays.copyOf(categoryToTemplate,
+					Math.max(category.getID() + 1, Category.numberOfCategories()));
+		}
+		final Coindexation existing = categoryToTemplate[category.getID()];
+		if (existing != null && !replace) {
+			return existing;
+		}
+		categoryToTemplate[category.getID()] = template;
+		return template;
+	}
+
+	private static Coindexation getTemplate(final Category category) {
+		final Coindexation[] templates = categoryToTemplate;
+		Coindexation result = category.getID() < templates.length ? templates[category.getID()] : null;
+		if (result == null) {
+			final String markedUpCategory = categoryToMarkedUpCategory.get(category);
+			result = setTemplate(category,
+					makeTemplate(markedUpCategory == null ? category.toString() : markedUpCategory), false);
 		}
+		return result;
+	}
+
+	/**
+	 * Copies a template, replacing the placeholder head with the given head. Subtrees that don't mention the head are
+	 * shared with the template.
+	 */
+	private Coindexation instantiate(final Coindexation.IDorHead head) {
+		final Coindexation newLeft = left == null ? null : left.instantiate(head);
+		final Coindexation newRight = right == null ? null : right.instantiate(head);
+		final Coindexation.IDorHead newIDorHead = idOrHead.isHead() && idOrHead.head.equals(TEMPLATE_HEAD_LIST) ? head
+				: idOrHead;
+		if (newIDorHead == idOrHead && newLeft == left && newRight == right) {
+			return this;
+		}
+		return new Coindexation(newLeft, newRight, newIDorHead, preposition);
 	}
 
 	Coindexation normalize(final IntIntHashMap substitutions, final int minValue) {
@@ -106,11 +176,19 @@ public class Coindexation implements Serializable {
 				newID = substitutions.size() + minValue;
 				substitutions.put(idOrHead.id, newID);
 			}
-			newIDorHead = new Coindexation.IDorHead(newID);
+			if (newID != idOrHead.id) {
+				newIDorHead = new Coindexation.IDorHead(newID);
+			}
+		}
+
+		final Coindexation newLeft = left == null ? null : left.normalize(substitutions, minValue);
+		final Coindexation newRight = right == null ? null : right.normalize(substitutions, minValue);
+		if (newIDorHead == idOrHead && newLeft == left && newRight == right) {
+			// Already normalized, so the tree can be shared.
+			return this;
 		}
 
-		return new Coindexation(left == null ? null : left.normalize(substitutions, minValue), right == null ? null
-				: right.normalize(substitutions, minValue), newIDorHead, preposition);
+		return new Coindexation(newLeft, newRight, newIDorHead, preposition);
 	}
 
 	Coindexation specifyPreposition(final Preposition newPreposition) {
@@ -121,14 +199,21 @@ public class Coindexation implements Serializable {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(left, right, idOrHead, preposition);
-
+		if (hashCode == 0) {
+			hashCode = Objects.hash(left, right, idOrHead, preposition);
+		}
+		return hashCode;
 	}
 
+	private transient int hashCode = 0;
+
 	@Override
 	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
 		final Coindexation other = (Coindexation) obj;
-		return other != null && Objects.equals(idOrHead, other.idOrHead)
+		return other != null && hashCode() == other.hashCode() && Objects.equals(idOrHead, other.idOrHead)
 				&& Objects.equals(preposition, other.preposition) && Objects.equals(left, other.left)
 				&& Objects.equals(right, other.right);
 
@@ -254,13 +339,8 @@ public class Coindexation implements Serializable {
 		return idOrHead;
 	}
 
-	static Coindexation fromString(final Category category2, final int wordIndex) {
-		String category = categoryToMarkedUpCategory.get(category2);
-		if (category == null) {
-			category = category2.toString();
-		}
-		return fromString(category, new Coindexation.IDorHead(Collections.singletonList(wordIndex)), new HashMap<>(),
-				wordIndex, true);
+	static Coindexation fromString(final Category category, final int wordIndex) {
+		return getTemplate(category).instantiate(new Coindexation.IDorHead(Collections.singletonList(wordIndex)));
 	}
 
 	public static Coindexation fromString(final String category, final int wordIndex) {
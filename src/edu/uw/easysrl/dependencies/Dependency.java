@@ -38,6 +38,32 @@ abstract class Dependency implements Serializable {
 
 	public abstract boolean isResolved();
 
+	/**
+	 * A 64-bit hash of the dependency. Equal dependencies have equal fingerprints, and fingerprints are well mixed, so
+	 * the sum of the fingerprints of a set of dependencies is a cheap order-independent hash of the set.
+	 */
+	public abstract long getFingerprint();
+
+	long getFingerprintOfFields() {
+		long hash = category.getID();
+		hash = 31 * hash + argNumber;
+		hash = 31 * hash + head;
+		hash = 31 * hash + preposition.getID();
+		return hash;
+	}
+
+	/**
+	 * Finalizer from MurmurHash3, so that similar inputs get unrelated hashes.
+	 */
+	static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hash(argNumber, head, category, preposition);
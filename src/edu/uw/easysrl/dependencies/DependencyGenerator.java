@@ -95,8 +95,8 @@ public class DependencyGenerator implements Serializable {
 			final SyntaxTreeNode left = stack.pop();
 			node.getChild(1).accept(this);
 			final SyntaxTreeNode right = stack.pop();
-			final Collection<RuleProduction> rules = Combinator.getRules(left.getCategory(), right.getCategory(),
-					Combinator.STANDARD_COMBINATORS);
+			final Collection<RuleProduction> rules = Combinator.getStandardRules(left.getCategory(),
+					right.getCategory());
 			for (final RuleProduction rule : rules) {
 				if (rule.getCategory().equals(node.getCategory())) {
 					final List<UnlabelledDependency> resolvedDeps = new ArrayList<>();
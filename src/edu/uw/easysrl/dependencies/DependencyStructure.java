@@ -11,6 +11,8 @@ import java.util.Set;
 
 import com.carrotsearch.hppc.IntIntHashMap;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.grammar.Preposition;
@@ -48,6 +50,26 @@ public class DependencyStructure implements Serializable {
 	}
 
 	private int hashcode = 0;
+	private transient long fingerprint = 0;
+
+	/**
+	 * A 64-bit hash of the structure, which is computed the first time it's needed. Equal structures have equal
+	 * fingerprints.
+	 */
+	public long getFingerprint() {
+		if (fingerprint == 0) {
+			long hash = 0;
+			for (final UnresolvedDependency dep : unresolvedDependencies) {
+				hash += dep.getFingerprint();
+			}
+
+			hash = 31 * hash + coindexation.hashCode();
+			hash = 31 * hash + (isConjunction ? 1 : 0);
+			fingerprint = Dependency.mix(hash);
+		}
+
+		return fingerprint;
+	}
 
 	@Override
 	public int hashCode() {
@@ -59,8 +81,11 @@ public class DependencyStructure implements Serializable {
 
 	@Override
 	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
 		final DependencyStructure other = (DependencyStructure) obj;
-		return coindexation.equals(other.coindexation) && unresolvedDependencies.equals(other.unresolvedDependencies)
+		return hashCode() == other.hashCode() && coindexation.equals(other.coindexation) && unresolvedDependencies.equals(other.unresolvedDependencies)
 				&& isConjunction == other.isConjunction;
 	}
 
@@ -115,7 +140,7 @@ public class DependencyStructure implements Serializable {
 
 		final Coindexation normalizedCoindexation = normalize(newCoindexation, newUnresolvedDependencies,
 				normalizedUnresolvedDependencies, newResolvedDependencies, 1);
-		return new DependencyStructure(normalizedCoindexation, normalizedUnresolvedDependencies);
+		return intern(new DependencyStructure(normalizedCoindexation, normalizedUnresolvedDependencies));
 	}
 
 	public DependencyStructure conjunction() {
@@ -147,7 +172,7 @@ public class DependencyStructure implements Serializable {
 				newCoindexationRight, idOrHead), newUnresolvedDependencies, normalizedUnresolvedDependencies,
 				newResolvedDependencies, 1);
 
-		return new DependencyStructure(normalizedCoindexation, normalizedUnresolvedDependencies);
+		return intern(new DependencyStructure(normalizedCoindexation, normalizedUnresolvedDependencies));
 	}
 
 	/**
@@ -181,13 +206,28 @@ public class DependencyStructure implements Serializable {
 					newResolvedDependencies, 1);
 		}
 
-		return new DependencyStructure(normalizedCoindexation, normalizedUnresolvedDependencies);
+		return intern(new DependencyStructure(normalizedCoindexation, normalizedUnresolvedDependencies));
+	}
+
+	/**
+	 * Identical structures are built many times in a chart, so the results of combinators are interned to share one
+	 * instance. Equality checks between interned structures are then just identity checks.
+	 */
+	private final static Interner<DependencyStructure> interner = Interners.newWeakInterner();
+
+	private static DependencyStructure intern(final DependencyStructure dependencyStructure) {
+		return interner.intern(dependencyStructure);
 	}
 
 	/**
 	 * Returns an equivalent dependency structure, where all the IDs are >=@minID
 	 */
 	private DependencyStructure standardizeApart(final int minID) {
+		if (unresolvedDependencies.isEmpty() && coindexation.getMaxID() == 0) {
+			// No IDs to rename, e.g. for NPs.
+			return this;
+		}
+
 		final Set<UnresolvedDependency> normalizedUnresolvedDependencies = new HashSet<>(unresolvedDependencies.size());
 		final Coindexation newArgument = normalize(coindexation, unresolvedDependencies,
 				normalizedUnresolvedDependencies, Collections.emptyList(), minID);
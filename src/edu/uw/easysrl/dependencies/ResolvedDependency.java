@@ -41,6 +41,13 @@ public class ResolvedDependency extends Dependency {
 		return Objects.hash(argument, semanticRole, super.hashCode());
 	}
 
+	@Override
+	public long getFingerprint() {
+		long hash = 31 * getFingerprintOfFields() + argument;
+		hash = 31 * hash + (semanticRole == null ? -1 : semanticRole.getID());
+		return mix(hash);
+	}
+
 	public SRLLabel getSemanticRole() {
 		return semanticRole;
 	}
@@ -1,46 +1,47 @@
 package edu.uw.easysrl.dependencies;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+
+import com.carrotsearch.hppc.IntObjectHashMap;
 
 import edu.uw.easysrl.syntax.grammar.Preposition;
 
 /**
- * Used to unify two dependency structures
+ * Used to unify two dependency structures. Substitutions are stored in primitive maps keyed by ID, to avoid boxing on
+ * every binary combination.
  *
  */
 class UnifyingSubstitution {
-	private final Map<Integer, Coindexation.IDorHead> substitutions;
-	private final Map<Integer, Preposition> prepositionSubstitutions;
+	// Key used for the ID of heads, which don't have one.
+	private final static int NO_ID = Integer.MIN_VALUE;
+
+	private final IntObjectHashMap<Coindexation.IDorHead> substitutions = new IntObjectHashMap<>();
+	private final IntObjectHashMap<Preposition> prepositionSubstitutions = new IntObjectHashMap<>();
 	private final Map<List<Integer>, Coindexation.IDorHead> headSubstitutions;
+	private int freshID = 0;
 
-	private UnifyingSubstitution(final Map<Integer, Coindexation.IDorHead> substitutions,
-			final Map<Integer, Preposition> prepositionSubstitutions,
-			final Map<List<Integer>, Coindexation.IDorHead> headSubstitutions) {
+	private UnifyingSubstitution(final Map<List<Integer>, Coindexation.IDorHead> headSubstitutions) {
 		super();
-		this.substitutions = substitutions;
-		this.prepositionSubstitutions = prepositionSubstitutions;
 		this.headSubstitutions = headSubstitutions;
 	}
 
 	static UnifyingSubstitution make(final Coindexation left, final Coindexation right, final boolean isConjunction) {
-		final Map<Integer, Coindexation.IDorHead> substitutions = new HashMap<>();
-		final Map<Integer, Preposition> prepositionSubstitutions = new HashMap<>();
-		final Map<List<Integer>, Coindexation.IDorHead> headSubstitutions = new HashMap<>();
+		// Head substitutions are only used for coordination.
+		final UnifyingSubstitution result = new UnifyingSubstitution(isConjunction ? new HashMap<>()
+				: Collections.emptyMap());
+		result.unify(left, right, isConjunction);
+		return result;
+	}
 
-		make(left, right, substitutions, prepositionSubstitutions, headSubstitutions, new AtomicInteger(0),
-				isConjunction);
-		return new UnifyingSubstitution(substitutions, prepositionSubstitutions, headSubstitutions);
+	private static int key(final Integer id) {
+		return id == null ? NO_ID : id;
 	}
 
-	private static void make(final Coindexation left, final Coindexation right,
-			final Map<Integer, Coindexation.IDorHead> substitutions,
-			final Map<Integer, Preposition> prepositionSubstitutions,
-			final Map<List<Integer>, Coindexation.IDorHead> headSubstitutions, final AtomicInteger freshID,
-			final boolean isConjunction) {
+	private void unify(final Coindexation left, final Coindexation right, final boolean isConjunction) {
 		final Preposition newPreposition;
 
 		if (left.preposition == Preposition.UNSPECIFIED) {
@@ -54,23 +55,25 @@ class UnifyingSubstitution {
 		if (!right.idOrHead.isHead()) {
 			if (!left.idOrHead.isHead()) {
 				// See if we already have an entry for either ID.
-				Coindexation.IDorHead id = substitutions.getOrDefault(left.idOrHead.id,
-						substitutions.get(right.idOrHead.id));
+				Coindexation.IDorHead id = substitutions.get(key(left.idOrHead.id));
+				if (id == null) {
+					id = substitutions.get(key(right.idOrHead.id));
+				}
 
 				if (id == null) {
 					// No entry for either ID. Make a fresh ID.
-					id = new Coindexation.IDorHead(freshID.decrementAndGet());
+					id = new Coindexation.IDorHead(--freshID);
 				}
 
 				// Make both unify to the same ID.
-				substitutions.put(left.idOrHead.id, id);
-				substitutions.put(right.idOrHead.id, id);
-				prepositionSubstitutions.put(left.idOrHead.id, newPreposition);
+				substitutions.put(key(left.idOrHead.id), id);
+				substitutions.put(key(right.idOrHead.id), id);
+				prepositionSubstitutions.put(key(left.idOrHead.id), newPreposition);
 			} else {
 				// Update the right ID to point to the left Head
-				substitutions.put(right.idOrHead.id, left.idOrHead);
+				substitutions.put(key(right.idOrHead.id), left.idOrHead);
 			}
-			prepositionSubstitutions.put(right.idOrHead.id, newPreposition);
+			prepositionSubstitutions.put(key(right.idOrHead.id), newPreposition);
 		} else {
 			if (isConjunction) {
 				// Allow coordinated phrases to have multiple heads.
@@ -83,20 +86,18 @@ class UnifyingSubstitution {
 				headSubstitutions.put(right.idOrHead.head, new Coindexation.IDorHead(coordinatedHead));
 			} else {
 				// Update the left ID to point to the right Head
-				substitutions.put(left.idOrHead.id, right.idOrHead);
+				substitutions.put(key(left.idOrHead.id), right.idOrHead);
 			}
 
-			prepositionSubstitutions.put(left.idOrHead.id, newPreposition);
+			prepositionSubstitutions.put(key(left.idOrHead.id), newPreposition);
 		}
 
 		// Recurse on the children.
 		if (left.left != null) {
-			make(left.left, right.left, substitutions, prepositionSubstitutions, headSubstitutions, freshID,
-					isConjunction);
+			unify(left.left, right.left, isConjunction);
 		}
 		if (left.right != null) {
-			make(left.right, right.right, substitutions, prepositionSubstitutions, headSubstitutions, freshID,
-					isConjunction);
+			unify(left.right, right.right, isConjunction);
 		}
 	}
 
@@ -121,16 +122,26 @@ class UnifyingSubstitution {
 			return null;
 		}
 		Coindexation.IDorHead newID = coindexation.idOrHead.isHead() ? headSubstitutions
-				.get(coindexation.idOrHead.head) : substitutions.get(coindexation.idOrHead.id);
+				.get(coindexation.idOrHead.head) : substitutions.get(key(coindexation.idOrHead.id));
 
-				if (newID == null) {
-					newID = coindexation.idOrHead;
-				}
-				if (coindexation.left == null && coindexation.right == null) {
-					final Preposition newPrep = prepositionSubstitutions.get(coindexation.idOrHead.id);
-					return new Coindexation(newID, newPrep != null ? newPrep : coindexation.preposition);
-				} else {
-					return new Coindexation(applyTo(coindexation.left), applyTo(coindexation.right), newID);
-				}
+		if (newID == null) {
+			newID = coindexation.idOrHead;
+		}
+
+		// Subtrees that the substitution doesn't change are shared with the input.
+		if (coindexation.left == null && coindexation.right == null) {
+			final Preposition newPrep = prepositionSubstitutions.get(key(coindexation.idOrHead.id));
+			if (newID == coindexation.idOrHead && (newPrep == null || newPrep == coindexation.preposition)) {
+				return coindexation;
+			}
+			return new Coindexation(newID, newPrep != null ? newPrep : coindexation.preposition);
+		} else {
+			final Coindexation newLeft = applyTo(coindexation.left);
+			final Coindexation newRight = applyTo(coindexation.right);
+			if (newID == coindexation.idOrHead && newLeft == coindexation.left && newRight == coindexation.right) {
+				return coindexation;
+			}
+			return new Coindexation(newLeft, newRight, newID);
+		}
 	}
 }
\ No newline at end of file
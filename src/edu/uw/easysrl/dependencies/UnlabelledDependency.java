@@ -51,6 +51,16 @@ public class UnlabelledDependency extends Dependency {
 
 	}
 
+	@Override
+	public long getFingerprint() {
+		long hash = getFingerprintOfFields();
+		for (final int arg : argument) {
+			hash = 31 * hash + arg;
+		}
+
+		return mix(hash);
+	}
+
 	@Override
 	public boolean equals(final Object obj) {
 		final UnlabelledDependency other = (UnlabelledDependency) obj;
@@ -76,6 +86,25 @@ public class UnlabelledDependency extends Dependency {
 		return result;
 	}
 
+	/**
+	 * Hashes the attachment of this dependency to one of its arguments, ignoring the label. The hash is a mix of the
+	 * category, argument number, head and argument, so it can be computed on demand without any lookup tables.
+	 */
+	public int getAttachmentHash(final int arg) {
+		long hash = getCategory().getID();
+		hash = 31 * hash + getArgNumber();
+		hash = 31 * hash + getHead();
+		hash = 31 * hash + arg;
+
+		// Finalizer from MurmurHash3, so that similar attachments get unrelated hashes.
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return (int) hash;
+	}
+
 	public int getFirstArgumentIndex() {
 		return argument.get(0);
 	}
@@ -59,6 +59,11 @@ class UnresolvedDependency extends Dependency {
 		return hashCode;
 	}
 
+	@Override
+	public long getFingerprint() {
+		return mix(31 * getFingerprintOfFields() + argumentID);
+	}
+
 	@Override
 	public boolean equals(final Object obj) {
 		final UnresolvedDependency other = (UnresolvedDependency) obj;
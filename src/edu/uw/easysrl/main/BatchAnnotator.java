@@ -0,0 +1,295 @@
+package edu.uw.easysrl.main;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import com.google.common.collect.Iterators;
+
+import edu.uw.easysrl.main.EasySRL.OutputFormat;
+import edu.uw.easysrl.main.InputReader.InputToParser;
+import edu.uw.easysrl.syntax.parser.SRLParser;
+import edu.uw.easysrl.syntax.parser.SRLParser.CCGandSRLparse;
+import edu.uw.easysrl.util.Util;
+
+/**
+ * Parses a list of input files (shards), writing one output file per shard. Output files are named by the shard's
+ * position in the list and the input's file name, so inputs with the same name in different folders don't clash.
+ * Output is written to a temporary file, which is renamed when the shard is finished, so finished shards are never
+ * partially written and can be skipped.
+ *
+ * Progress through unfinished shards is recorded in a checkpoint manifest in the output folder, so an interrupted job
+ * can resume where it stopped. Several machines can split the work by each taking a different shard index (shard i/n
+ * parses every n'th input file, starting from the i'th). They only need to share the output folder.
+ */
+public class BatchAnnotator {
+	// Number of sentences between checkpoints.
+	private final static int CHECKPOINT_INTERVAL = 1000;
+	private final static String PART_SUFFIX = ".part";
+
+	private final SRLParser parser;
+	private final InputReader reader;
+	private final OutputFormat outputFormat;
+	private final File outputFolder;
+
+	public BatchAnnotator(final SRLParser parser, final InputReader reader, final OutputFormat outputFormat,
+			final File outputFolder) {
+		this.parser = parser;
+		this.reader = reader;
+		this.outputFormat = outputFormat;
+		this.outputFolder = outputFolder;
+	}
+
+	/**
+	 * Reads a list of input files, one per line.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If a file is listed more than once.
+	 */
+	public static List<File> readInputList(final File file) throws IOException {
+		final List<File> result = new ArrayList<>();
+		final Set<String> paths = new HashSet<>();
+		for (final String line : Util.readFile(file)) {
+			if (!line.trim().isEmpty() && !line.startsWith("#")) {
+				final File input = Util.getFile(line.trim());
+				if (!paths.add(input.getCanonicalPath())) {
+					throw new IllegalArgumentException("Input file listed more than once in " + file + ": " + input);
+				}
+				result.add(input);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Parses this machine's share of the inputs.
+	 *
+	 * @param shard
+	 *            A shard specification "i/n", meaning this is the i'th of n machines (counting from 0).
+	 * @return The number of sentences parsed.
+	 */
+	public int run(final List<File> inputs, final String shard) throws IOException, InterruptedException {
+		final String[] fields = shard.split("/");
+		final int shardIndex = fields.length == 2 ? Integer.valueOf(fields[0]) : -1;
+		final int numberOfShards = fields.length == 2 ? Integer.valueOf(fields[1]) : 0;
+		if (shardIndex < 0 || shardIndex >= numberOfShards) {
+			throw new IllegalArgumentException("Invalid shard: " + shard + ". Expected i/n, with 0 <= i < n");
+		}
+
+		outputFolder.mkdirs();
+		// Each machine has its own manifest, so they never write the same file.
+		final Manifest manifest = new Manifest(new File(outputFolder, "checkpoint-" + shardIndex + "-of-"
+				+ numberOfShards));
+		final ExecutorService executorService = Executors.newFixedThreadPool(1);
+		int result = 0;
+		try {
+			for (int i = shardIndex; i < inputs.size(); i += numberOfShards) {
+				result += annotate(inputs.get(i), i, manifest, executorService);
+			}
+		} finally {
+			executorService.shutdown();
+		}
+		return result;
+	}
+
+	private int annotate(final File input, final int index, final Manifest manifest,
+			final ExecutorService executorService) throws IOException, InterruptedException {
+		final File output = new File(outputFolder, String.format("%05d-%s.%s", index, input.getName(), outputFormat
+				.name().toLowerCase()));
+		if (output.exists() || manifest.isFinished(input.getPath())) {
+			System.err.println("Skipping finished shard: " + input);
+			return 0;
+		}
+
+		final File part = new File(outputFolder, output.getName() + PART_SUFFIX);
+		Checkpoint checkpoint = manifest.get(input.getPath());
+		// Binary output can't be resumed, because the stream's dictionaries would need to be rebuilt.
+		if (checkpoint == null || outputFormat == OutputFormat.BINARY || !part.exists()
+				|| part.length() < checkpoint.bytes) {
+			checkpoint = new Checkpoint(0, 0, 0);
+		} else {
+			System.err.println("Resuming shard: " + input + " from line " + checkpoint.lines);
+		}
+
+		try (FileOutputStream stream = new FileOutputStream(part, checkpoint.bytes > 0);
+				MappedInputFile mappedInput = input.getName().endsWith(".gz") ? null : new MappedInputFile(input)) {
+			// Drop any output written after the last checkpoint.
+			final FileChannel channel = stream.getChannel();
+			channel.truncate(checkpoint.bytes);
+
+			final Iterator<Supplier<InputToParser>> lines = mappedInput == null ? readLines(input)
+					: readLines(mappedInput);
+			Iterators.advance(lines, checkpoint.lines);
+
+			final BufferedOutputStream buffered = new BufferedOutputStream(stream, 1 << 16);
+			final BinaryParseWriter binaryOut = outputFormat == OutputFormat.BINARY ? new BinaryParseWriter(buffered,
+					false) : null;
+			final Writer textOut = binaryOut == null ? new OutputStreamWriter(buffered) : null;
+
+			int lineNumber = checkpoint.lines;
+			int id = checkpoint.sentences;
+			final List<Future<List<CCGandSRLparse>>> parses = new ArrayList<>(CHECKPOINT_INTERVAL);
+			while (lines.hasNext()) {
+				// Parse a chunk of sentences, and write their output in order.
+				parses.clear();
+				while (lines.hasNext() && parses.size() < CHECKPOINT_INTERVAL) {
+					final Supplier<InputToParser> sentence = lines.next();
+					lineNumber++;
+					if (sentence != null) {
+						parses.add(executorService.submit(() -> parser.parseTokens(sentence.get().getInputWords())));
+					}
+				}
+
+				for (final Future<List<CCGandSRLparse>> parse : parses) {
+					id++;
+					if (binaryOut != null) {
+						binaryOut.write(getResult(parse), id);
+					} else {
+						outputFormat.printer.printJointParses(getResult(parse), id, textOut);
+						textOut.append(System.lineSeparator());
+					}
+				}
+
+				if (binaryOut != null) {
+					binaryOut.flush();
+				} else {
+					textOut.flush();
+				}
+				channel.force(false);
+				manifest.put(input.getPath(), new Checkpoint(lineNumber, id, channel.size()));
+			}
+
+			if (binaryOut != null) {
+				binaryOut.close();
+			} else {
+				textOut.close();
+			}
+
+			Files.move(part.toPath(), output.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			manifest.finish(input.getPath());
+			System.err.println("Finished shard: " + input + " (" + (id - checkpoint.sentences) + " sentences)");
+			return id - checkpoint.sentences;
+		}
+	}
+
+	private static List<CCGandSRLparse> getResult(final Future<List<CCGandSRLparse>> parse)
+			throws InterruptedException {
+		try {
+			return parse.get();
+		} catch (final ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Lines of the input, which are read when the supplier is called. Blank lines and comments are null.
+	 */
+	private Iterator<Supplier<InputToParser>> readLines(final MappedInputFile input) {
+		return Iterators.transform(input.iterator(), line -> line.isEmpty() || line.isComment() ? null
+				: () -> reader.readInput(line.getBuffer(), line.getOffset(), line.getLength()));
+	}
+
+	private Iterator<Supplier<InputToParser>> readLines(final File input) throws IOException {
+		return Iterators.transform(Util.readFileLineByLine(input), line -> line.isEmpty() || line.startsWith("#") ? null
+				: () -> reader.readInput(line));
+	}
+
+	private static class Checkpoint {
+		// Number of input lines read, including blank lines and comments.
+		private final int lines;
+		// Number of sentences parsed, used for numbering the next sentence.
+		private final int sentences;
+		// Length of the output.
+		private final long bytes;
+
+		private Checkpoint(final int lines, final int sentences, final long bytes) {
+			this.lines = lines;
+			this.sentences = sentences;
+			this.bytes = bytes;
+		}
+	}
+
+	/**
+	 * Records finished shards, and the progress through unfinished ones. The manifest is rewritten whenever it changes,
+	 * by writing a new file and renaming it, so it's never partially written.
+	 *
+	 * File format: one line per shard, either "input_file lines sentences bytes" or "input_file done", separated by
+	 * tabs.
+	 */
+	private static class Manifest {
+		private final static String FINISHED = "done";
+		private final File file;
+		private final Map<String, Checkpoint> inputToCheckpoint = new LinkedHashMap<>();
+		private final Set<String> finished = new LinkedHashSet<>();
+
+		private Manifest(final File file) throws IOException {
+			this.file = file;
+			if (file.exists()) {
+				for (final String line : Util.readFile(file)) {
+					final String[] fields = line.split("\t");
+					if (fields[1].equals(FINISHED)) {
+						finished.add(fields[0]);
+					} else {
+						inputToCheckpoint.put(fields[0], new Checkpoint(Integer.valueOf(fields[1]), Integer
+								.valueOf(fields[2]), Long.valueOf(fields[3])));
+					}
+				}
+			}
+		}
+
+		private Checkpoint get(final String input) {
+			return inputToCheckpoint.get(input);
+		}
+
+		private boolean isFinished(final String input) {
+			return finished.contains(input);
+		}
+
+		private void put(final String input, final Checkpoint checkpoint) throws IOException {
+			inputToCheckpoint.put(input, checkpoint);
+			save();
+		}
+
+		private void finish(final String input) throws IOException {
+			inputToCheckpoint.remove(input);
+			finished.add(input);
+			save();
+		}
+
+		private void save() throws IOException {
+			final File temp = new File(file.getPath() + ".tmp");
+			try (PrintWriter out = new PrintWriter(temp, "UTF-8")) {
+				for (final String input : finished) {
+					out.println(input + "\t" + FINISHED);
+				}
+				for (final Map.Entry<String, Checkpoint> entry : inputToCheckpoint.entrySet()) {
+					final Checkpoint checkpoint = entry.getValue();
+					out.println(entry.getKey() + "\t" + checkpoint.lines + "\t" + checkpoint.sentences + "\t"
+							+ checkpoint.bytes);
+				}
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
@@ -0,0 +1,322 @@
+package edu.uw.easysrl.main;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.uw.easysrl.dependencies.SRLFrame.SRLLabel;
+import edu.uw.easysrl.syntax.grammar.Category;
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleType;
+
+/**
+ * Reads parses written by {@link BinaryParseWriter}. Parses are returned in the same columnar layout they're stored
+ * in, so reading them doesn't need to rebuild syntax trees or dependency structures.
+ */
+public class BinaryParseReader implements Closeable {
+	private final InputStream in;
+	private final RuleType[] ruleTypes;
+	private final List<Category> categories = new ArrayList<>();
+	private final List<SRLLabel> labels = new ArrayList<>();
+	private final List<String> tags = new ArrayList<>();
+
+	// The record being decoded.
+	private byte[] buffer = new byte[1 << 12];
+	private int position;
+
+	public BinaryParseReader(final File file) throws IOException {
+		this(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+	}
+
+	public BinaryParseReader(final InputStream in) throws IOException {
+		this.in = in;
+		if (readVarint(in) != BinaryParseWriter.MAGIC) {
+			throw new IOException("Not a binary parse file");
+		}
+		final int version = readVarint(in);
+		if (version != BinaryParseWriter.VERSION) {
+			throw new IOException("Unsupported binary parse file version: " + version);
+		}
+
+		ruleTypes = new RuleType[readVarint(in)];
+		for (int i = 0; i < ruleTypes.length; i++) {
+			final byte[] name = new byte[readVarint(in)];
+			readFully(name, name.length);
+			ruleTypes[i] = RuleType.valueOf(new String(name, StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Returns the next sentence, or null at the end of the stream.
+	 */
+	public ParsedSentence next() throws IOException {
+		final int length;
+		try {
+			length = readVarint(in);
+		} catch (final EOFException e) {
+			return null;
+		}
+		if (buffer.length < length) {
+			buffer = new byte[Math.max(length, 2 * buffer.length)];
+		}
+		readFully(buffer, length);
+		position = 0;
+
+		for (int i = readVarint(); i > 0; i--) {
+			categories.add(Category.valueOf(readString()));
+		}
+		for (int i = readVarint(); i > 0; i--) {
+			final String name = readString();
+			final boolean isCoreArgument = buffer[position++] != 0;
+			labels.add(SRLLabel.fromString(isCoreArgument ? name : "ARGM-" + name));
+		}
+		for (int i = readVarint(); i > 0; i--) {
+			tags.add(readString());
+		}
+
+		final int id = readVarint();
+		final int numberOfParses = readVarint();
+		final List<Parse> parses = new ArrayList<>(numberOfParses);
+		for (int i = 0; i < numberOfParses; i++) {
+			parses.add(readParse());
+		}
+		return new ParsedSentence(id, parses);
+	}
+
+	private Parse readParse() {
+		final int numberOfWords = readVarint();
+		final String[] words = new String[numberOfWords];
+		for (int i = 0; i < numberOfWords; i++) {
+			words[i] = readString();
+		}
+		final String[] pos = readTags(numberOfWords);
+		final String[] ner = readTags(numberOfWords);
+
+		final int numberOfNodes = readVarint();
+		final byte[] kinds = new byte[numberOfNodes];
+		System.arraycopy(buffer, position, kinds, 0, numberOfNodes);
+		position += numberOfNodes;
+		final Category[] nodeCategories = new Category[numberOfNodes];
+		for (int i = 0; i < numberOfNodes; i++) {
+			nodeCategories[i] = categories.get(readVarint());
+		}
+		final RuleType[] nodeRuleTypes = new RuleType[numberOfNodes];
+		for (int i = 0; i < numberOfNodes; i++) {
+			nodeRuleTypes[i] = ruleTypes[buffer[position++]];
+		}
+
+		final int numberOfDependencies = readVarint();
+		final int[] heads = readInts(numberOfDependencies);
+		final int[] argNumbers = readInts(numberOfDependencies);
+		final int[] arguments = readInts(numberOfDependencies);
+		final SRLLabel[] dependencyLabels = new SRLLabel[numberOfDependencies];
+		for (int i = 0; i < numberOfDependencies; i++) {
+			final int index = readVarint();
+			dependencyLabels[i] = index == 0 ? null : labels.get(index - 1);
+		}
+
+		return new Parse(words, pos, ner, kinds, nodeCategories, nodeRuleTypes, heads, argNumbers, arguments,
+				dependencyLabels);
+	}
+
+	private String[] readTags(final int length) {
+		final String[] result = new String[length];
+		for (int i = 0; i < length; i++) {
+			final int index = readVarint();
+			result[i] = index == 0 ? null : tags.get(index - 1);
+		}
+		return result;
+	}
+
+	private int[] readInts(final int length) {
+		final int[] result = new int[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = readVarint();
+		}
+		return result;
+	}
+
+	private int readVarint() {
+		int result = 0;
+		for (int shift = 0;; shift += 7) {
+			final byte b = buffer[position++];
+			result |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return result;
+			}
+		}
+	}
+
+	private String readString() {
+		final int length = readVarint();
+		final String result = new String(buffer, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return result;
+	}
+
+	private static int readVarint(final InputStream in) throws IOException {
+		int result = 0;
+		for (int shift = 0;; shift += 7) {
+			final int b = in.read();
+			if (b == -1) {
+				throw new EOFException();
+			}
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+	}
+
+	private void readFully(final byte[] result, final int length) throws IOException {
+		int read = 0;
+		while (read < length) {
+			final int n = in.read(result, read, length - read);
+			if (n == -1) {
+				throw new EOFException("Truncated binary parse record");
+			}
+			read += n;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	public static class ParsedSentence {
+		private final int id;
+		private final List<Parse> parses;
+
+		private ParsedSentence(final int id, final List<Parse> parses) {
+			this.id = id;
+			this.parses = Collections.unmodifiableList(parses);
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		/**
+		 * The parses, best first. Empty if parsing failed.
+		 */
+		public List<Parse> getParses() {
+			return parses;
+		}
+	}
+
+	/**
+	 * A parse, stored in columns. Nodes are indexed in pre-order, so node 0 is the root, and the children of a node
+	 * follow it.
+	 */
+	public static class Parse {
+		private final String[] words;
+		private final String[] pos;
+		private final String[] ner;
+		private final byte[] kinds;
+		private final Category[] categories;
+		private final RuleType[] ruleTypes;
+		private final int[] heads;
+		private final int[] argNumbers;
+		private final int[] arguments;
+		private final SRLLabel[] labels;
+
+		private Parse(final String[] words, final String[] pos, final String[] ner, final byte[] kinds,
+				final Category[] categories, final RuleType[] ruleTypes, final int[] heads, final int[] argNumbers,
+				final int[] arguments, final SRLLabel[] labels) {
+			this.words = words;
+			this.pos = pos;
+			this.ner = ner;
+			this.kinds = kinds;
+			this.categories = categories;
+			this.ruleTypes = ruleTypes;
+			this.heads = heads;
+			this.argNumbers = argNumbers;
+			this.arguments = arguments;
+			this.labels = labels;
+		}
+
+		public int getNumberOfWords() {
+			return words.length;
+		}
+
+		public String getWord(final int wordIndex) {
+			return words[wordIndex];
+		}
+
+		public String getPos(final int wordIndex) {
+			return pos[wordIndex];
+		}
+
+		public String getNER(final int wordIndex) {
+			return ner[wordIndex];
+		}
+
+		public int getNumberOfNodes() {
+			return kinds.length;
+		}
+
+		public Category getCategory(final int node) {
+			return categories[node];
+		}
+
+		public RuleType getRuleType(final int node) {
+			return ruleTypes[node];
+		}
+
+		/**
+		 * The number of children of a node: 0 for leaves, 1 for unary rules, and 2 for binary rules.
+		 */
+		public int getNumberOfChildren(final int node) {
+			return kinds[node] == BinaryParseWriter.LEAF ? 0 : kinds[node] == BinaryParseWriter.UNARY ? 1 : 2;
+		}
+
+		public boolean isLeaf(final int node) {
+			return kinds[node] == BinaryParseWriter.LEAF;
+		}
+
+		public boolean getHeadIsLeft(final int node) {
+			return kinds[node] != BinaryParseWriter.BINARY_HEAD_RIGHT;
+		}
+
+		/**
+		 * The lexical category of each word, in sentence order.
+		 */
+		public List<Category> getLexicalCategories() {
+			final List<Category> result = new ArrayList<>(words.length);
+			for (int i = 0; i < kinds.length; i++) {
+				if (kinds[i] == BinaryParseWriter.LEAF) {
+					result.add(categories[i]);
+				}
+			}
+			return result;
+		}
+
+		public int getNumberOfDependencies() {
+			return heads.length;
+		}
+
+		public int getHead(final int dependency) {
+			return heads[dependency];
+		}
+
+		public int getArgNumber(final int dependency) {
+			return argNumbers[dependency];
+		}
+
+		public int getArgument(final int dependency) {
+			return arguments[dependency];
+		}
+
+		public SRLLabel getLabel(final int dependency) {
+			return labels[dependency];
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package edu.uw.easysrl.main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.uw.easysrl.dependencies.ResolvedDependency;
+import edu.uw.easysrl.dependencies.SRLFrame.SRLLabel;
+import edu.uw.easysrl.syntax.grammar.Category;
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleType;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeLabelling;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeLeaf;
+import edu.uw.easysrl.syntax.parser.SRLParser.CCGandSRLparse;
+
+/**
+ * Writes parses in a compact binary format, which is much smaller and faster to read than the text formats. Use
+ * {@link BinaryParseReader} to read it.
+ *
+ * The stream starts with a header, followed by one length-prefixed record per sentence. Categories, SRL labels and
+ * POS/NER tags are interned in dictionaries that are shared by the whole stream: each record starts with the entries
+ * it adds. Within a record, each parse is stored in columns:
+ *
+ * <pre>
+ * header:     MAGIC VERSION #rule_types rule_type_name*
+ * record:     length new_categories new_labels new_tags sentence_id #parses parse*
+ * parse:      #words word* pos* ner*
+ *             #nodes kind* category* rule_type*   (nodes in pre-order)
+ *             #deps head* arg_number* argument* label*
+ * </pre>
+ *
+ * Integers are unsigned varints, and strings are UTF-8 prefixed by their length. Tags and labels are written as
+ * dictionary index + 1, with 0 for null. Records are written whole, so the stream can be read while it's written.
+ */
+public class BinaryParseWriter implements Closeable {
+	final static int MAGIC = 0x45535242; // "ESRB"
+	final static int VERSION = 1;
+
+	// Node kinds. Unary nodes have one child, and binary nodes two, which follow them in pre-order.
+	final static int LEAF = 0;
+	final static int UNARY = 1;
+	final static int BINARY_HEAD_LEFT = 2;
+	final static int BINARY_HEAD_RIGHT = 3;
+
+	private final OutputStream out;
+	private final boolean flushEachRecord;
+
+	private final Map<Category, Integer> categoryToIndex = new IdentityHashMap<>();
+	private final Map<SRLLabel, Integer> labelToIndex = new IdentityHashMap<>();
+	private final Map<String, Integer> tagToIndex = new HashMap<>();
+
+	// Dictionary entries added by the current record.
+	private final List<Category> newCategories = new ArrayList<>();
+	private final List<SRLLabel> newLabels = new ArrayList<>();
+	private final List<String> newTags = new ArrayList<>();
+
+	private final ByteArrayOutputStream record = new ByteArrayOutputStream(1 << 12);
+	private final ByteArrayOutputStream dictionary = new ByteArrayOutputStream(1 << 10);
+	private final ByteArrayOutputStream length = new ByteArrayOutputStream(8);
+
+	/**
+	 * @param flushEachRecord
+	 *            Flush the output after each sentence, e.g. when reading from STDIN.
+	 */
+	public BinaryParseWriter(final OutputStream out, final boolean flushEachRecord) throws IOException {
+		this.out = out;
+		this.flushEachRecord = flushEachRecord;
+
+		final ByteArrayOutputStream header = new ByteArrayOutputStream();
+		writeVarint(MAGIC, header);
+		writeVarint(VERSION, header);
+		writeVarint(RuleType.values().length, header);
+		for (final RuleType ruleType : RuleType.values()) {
+			writeString(ruleType.name(), header);
+		}
+		header.writeTo(out);
+	}
+
+	/**
+	 * Writes the parses of a sentence. Dictionary entries are assigned in the order records are written, so records
+	 * are encoded and written under a lock. Encoding is cheap compared to parsing.
+	 *
+	 * @param parses
+	 *            The parses, or null if parsing failed.
+	 */
+	public synchronized void write(final List<CCGandSRLparse> parses, final int id) throws IOException {
+		record.reset();
+		writeVarint(id, record);
+		if (parses == null) {
+			writeVarint(0, record);
+		} else {
+			writeVarint(parses.size(), record);
+			for (final CCGandSRLparse parse : parses) {
+				writeParse(parse);
+			}
+		}
+
+		dictionary.reset();
+		writeVarint(newCategories.size(), dictionary);
+		for (final Category category : newCategories) {
+			writeString(category.toString(), dictionary);
+		}
+		writeVarint(newLabels.size(), dictionary);
+		for (final SRLLabel label : newLabels) {
+			writeString(label.toString(), dictionary);
+			dictionary.write(label.isCoreArgument() ? 1 : 0);
+		}
+		writeVarint(newTags.size(), dictionary);
+		for (final String tag : newTags) {
+			writeString(tag, dictionary);
+		}
+		newCategories.clear();
+		newLabels.clear();
+		newTags.clear();
+
+		length.reset();
+		writeVarint(dictionary.size() + record.size(), length);
+		length.writeTo(out);
+		dictionary.writeTo(out);
+		record.writeTo(out);
+		if (flushEachRecord) {
+			out.flush();
+		}
+	}
+
+	private void writeParse(final CCGandSRLparse parse) {
+		final List<SyntaxTreeNodeLeaf> leaves = parse.getCcgParse().getLeaves();
+		writeVarint(leaves.size(), record);
+		for (final SyntaxTreeNodeLeaf leaf : leaves) {
+			writeString(leaf.getWord(), record);
+		}
+		for (final SyntaxTreeNodeLeaf leaf : leaves) {
+			writeVarint(getTagIndex(leaf.getPos()), record);
+		}
+		for (final SyntaxTreeNodeLeaf leaf : leaves) {
+			writeVarint(getTagIndex(leaf.getNER()), record);
+		}
+
+		final List<SyntaxTreeNode> nodes = new ArrayList<>(2 * leaves.size());
+		addNodes(parse.getCcgParse(), nodes);
+		writeVarint(nodes.size(), record);
+		for (final SyntaxTreeNode node : nodes) {
+			final int arity = node.getChildren().size();
+			record.write(arity == 0 ? LEAF : arity == 1 ? UNARY : node.getHeadIsLeft() ? BINARY_HEAD_LEFT
+					: BINARY_HEAD_RIGHT);
+		}
+		for (final SyntaxTreeNode node : nodes) {
+			writeVarint(getCategoryIndex(node.getCategory()), record);
+		}
+		for (final SyntaxTreeNode node : nodes) {
+			record.write(node.getRuleType().ordinal());
+		}
+
+		final List<ResolvedDependency> dependencies = new ArrayList<>(parse.getDependencyParse());
+		writeVarint(dependencies.size(), record);
+		for (final ResolvedDependency dep : dependencies) {
+			writeVarint(dep.getHead(), record);
+		}
+		for (final ResolvedDependency dep : dependencies) {
+			writeVarint(dep.getArgNumber(), record);
+		}
+		for (final ResolvedDependency dep : dependencies) {
+			writeVarint(dep.getArgument(), record);
+		}
+		for (final ResolvedDependency dep : dependencies) {
+			writeVarint(getLabelIndex(dep.getSemanticRole()), record);
+		}
+	}
+
+	/**
+	 * Adds nodes in pre-order. Labelling nodes are skipped, because dependencies are stored separately.
+	 */
+	private static void addNodes(final SyntaxTreeNode node, final List<SyntaxTreeNode> result) {
+		if (node instanceof SyntaxTreeNodeLabelling) {
+			addNodes(node.getChild(0), result);
+			return;
+		}
+
+		result.add(node);
+		for (final SyntaxTreeNode child : node.getChildren()) {
+			addNodes(child, result);
+		}
+	}
+
+	private int getCategoryIndex(final Category category) {
+		Integer result = categoryToIndex.get(category);
+		if (result == null) {
+			result = categoryToIndex.size();
+			categoryToIndex.put(category, result);
+			newCategories.add(category);
+		}
+		return result;
+	}
+
+	private int getLabelIndex(final SRLLabel label) {
+		if (label == null) {
+			return 0;
+		}
+		Integer result = labelToIndex.get(label);
+		if (result == null) {
+			result = labelToIndex.size();
+			labelToIndex.put(label, result);
+			newLabels.add(label);
+		}
+		return result + 1;
+	}
+
+	private int getTagIndex(final String tag) {
+		if (tag == null) {
+			return 0;
+		}
+		Integer result = tagToIndex.get(tag);
+		if (result == null) {
+			result = tagToIndex.size();
+			tagToIndex.put(tag, result);
+			newTags.add(tag);
+		}
+		return result + 1;
+	}
+
+	private static void writeVarint(int value, final ByteArrayOutputStream out) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static void writeString(final String value, final ByteArrayOutputStream out) {
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarint(bytes.length, out);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	public synchronized void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+}
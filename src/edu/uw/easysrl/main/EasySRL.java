@@ -1,21 +1,31 @@
 package edu.uw.easysrl.main;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 import java.text.DecimalFormat;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.InputMismatchException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
 
 import uk.co.flamingpenguin.jewel.cli.ArgumentValidationException;
 import uk.co.flamingpenguin.jewel.cli.CliFactory;
@@ -24,6 +34,7 @@ import uk.co.flamingpenguin.jewel.cli.Option;
 import com.google.common.base.Stopwatch;
 
 import edu.uw.easysrl.dependencies.Coindexation;
+import edu.uw.easysrl.main.InputReader.InputToParser;
 import edu.uw.easysrl.semantics.lexicon.CompositeLexicon;
 import edu.uw.easysrl.semantics.lexicon.Lexicon;
 import edu.uw.easysrl.syntax.evaluation.CCGBankEvaluation;
@@ -39,8 +50,11 @@ import edu.uw.easysrl.syntax.parser.ParserAStar;
 import edu.uw.easysrl.syntax.parser.ParserBeamSearch;
 import edu.uw.easysrl.syntax.parser.ParserBuilder;
 import edu.uw.easysrl.syntax.parser.ParserCKY;
+import edu.uw.easysrl.syntax.parser.ParserListener;
+import edu.uw.easysrl.syntax.parser.ParserMetrics;
 import edu.uw.easysrl.syntax.parser.SRLParser;
 import edu.uw.easysrl.syntax.parser.SRLParser.BackoffSRLParser;
+import edu.uw.easysrl.syntax.parser.SRLParser.CachingSRLParser;
 import edu.uw.easysrl.syntax.parser.SRLParser.CCGandSRLparse;
 import edu.uw.easysrl.syntax.parser.SRLParser.JointSRLParser;
 import edu.uw.easysrl.syntax.parser.SRLParser.PipelineSRLParser;
@@ -67,7 +81,7 @@ public class EasySRL {
 		@Option(shortName = "i", defaultValue = "tokenized", description = "(Optional) Input Format: one of \"tokenized\", \"POStagged\" (word|pos), or \"POSandNERtagged\" (word|pos|ner)")
 		String getInputFormat();
 
-		@Option(shortName = "o", description = "Output Format: one of \"logic\", \"srl\", \"srl_indices\", \"ccgbank\", \"html\", \"dependencies\" or \"supertags\"", defaultValue = "logic")
+		@Option(shortName = "o", description = "Output Format: one of \"logic\", \"srl\", \"srl_indices\", \"ccgbank\", \"html\", \"dependencies\", \"supertags\", \"json\", \"json_logic\" or \"binary\"", defaultValue = "logic")
 		String getOutputFormat();
 
 		@Option(shortName = "a", description = "(Optional) Parsing algorithm: one of \"astar\" or \"cky\"", defaultValue = "astar")
@@ -79,6 +93,9 @@ public class EasySRL {
 		@Option(shortName = "n", defaultValue = "1", description = "(Optional) Number of parses to return per sentence. Values >1 are only supported for A* parsing. Defaults to 1.")
 		int getNbest();
 
+		@Option(description = "(Optional) Extract N-best lists lazily from the 1-best chart, which scales better to large values of N.")
+		boolean getLazyNbest();
+
 		@Option(shortName = "r", defaultValue = { "S[dcl]", "S[wq]", "S[q]", "S[b]\\NP", "NP" }, description = "(Optional) List of valid categories for the root node of the parse. Defaults to: S[dcl] S[wq] S[q] NP S[b]\\NP")
 		List<Category> getRootCategories();
 
@@ -88,6 +105,24 @@ public class EasySRL {
 		@Option(shortName = "w", defaultValue = "1.0", description = "Use a specified supertagger weight, instead of the pretrained value.")
 		double getSupertaggerWeight();
 
+		@Option(defaultValue = "256", description = "(Optional) Memory used by the joint model to cache lexical entries between sentences, in megabytes. Defaults to 256.")
+		long getForestCacheMegabytes();
+
+		@Option(defaultValue = "0", description = "(Optional) Caches the parses of repeated sentences, up to this many words in total. Defaults to 0 (no caching).")
+		long getSentenceCacheSize();
+
+		@Option(defaultValue = "", description = "(Optional) Collects parser statistics by sentence length, and writes them to this file at the end. Uses Prometheus text format if the file ends in .prom, and JSON otherwise. The statistics can also be read over JMX while parsing.")
+		String getMetricsFile();
+
+		@Option(defaultValue = "", description = "(Optional) Batch mode: a file listing input files, one per line. Each input file is parsed to a file in the output folder (see --outputFolder). Interrupted jobs resume where they stopped, and finished files are skipped.")
+		String getBatchInputs();
+
+		@Option(defaultValue = "", description = "(Optional) Output folder for batch mode.")
+		String getOutputFolder();
+
+		@Option(defaultValue = "0/1", description = "(Optional) For splitting batch mode between n machines: \"i/n\" parses every n'th input file, starting from the i'th (counting from 0). Defaults to 0/1.")
+		String getShard();
+
 		@Option(helpRequest = true, description = "Display this message", shortName = "h")
 		boolean getHelp();
 
@@ -103,7 +138,10 @@ public class EasySRL {
 		CCGBANK(ParsePrinter.CCGBANK_PRINTER), HTML(ParsePrinter.HTML_PRINTER), SUPERTAGS(ParsePrinter.SUPERTAG_PRINTER), PROLOG(
 				ParsePrinter.PROLOG_PRINTER), EXTENDED(ParsePrinter.EXTENDED_CCGBANK_PRINTER), DEPENDENCIES(
 				new ParsePrinter.DependenciesPrinter()), SRL(ParsePrinter.SRL_PRINTER), SRL_INDICES(
-				ParsePrinter.SRL_PRINTER_WITH_INDICES), LOGIC(ParsePrinter.LOGIC_PRINTER);
+				ParsePrinter.SRL_PRINTER_WITH_INDICES), LOGIC(ParsePrinter.LOGIC_PRINTER),
+		JSON(ParsePrinter.JSON_PRINTER), JSON_LOGIC(ParsePrinter.JSON_PRINTER_WITH_LOGIC),
+		// Written by BinaryParseWriter. The printer only determines which models are loaded.
+		BINARY(ParsePrinter.DEPENDENCIES_PRINTER);
 
 		public final ParsePrinter printer;
 
@@ -128,17 +166,29 @@ public class EasySRL {
 			final OutputFormat outputFormat = OutputFormat.valueOf(commandLineOptions.getOutputFormat().toUpperCase());
 			final ParsePrinter printer = outputFormat.printer;
 
+			final ParserMetrics metrics;
+			final List<ParserListener> listeners;
+			if (commandLineOptions.getMetricsFile().isEmpty()) {
+				metrics = null;
+				listeners = Collections.emptyList();
+			} else {
+				metrics = new ParserMetrics();
+				metrics.registerMBean(modelFolder.getName());
+				listeners = Collections.singletonList(metrics);
+			}
+
 			final SRLParser parser2;
 			if (pipelineFolder.exists()) {
 				// Joint model
 				final POSTagger posTagger = POSTagger.getStanfordTagger(new File(pipelineFolder, "posTagger"));
 				final PipelineSRLParser pipeline = makePipelineParser(pipelineFolder, commandLineOptions, 0.000001,
-						printer.outputsDependencies());
-				parser2 = new BackoffSRLParser(new JointSRLParser(getParserBuilder(commandLineOptions).build(),
-						posTagger), pipeline);
+						printer.outputsDependencies(), Collections.emptyList());
+				parser2 = new BackoffSRLParser(new JointSRLParser(getParserBuilder(commandLineOptions).listeners(
+						listeners).build(), posTagger), pipeline);
 			} else {
 				// Pipeline
-				parser2 = makePipelineParser(modelFolder, commandLineOptions, 0.000001, printer.outputsDependencies());
+				parser2 = makePipelineParser(modelFolder, commandLineOptions, 0.000001, printer.outputsDependencies(),
+						listeners);
 			}
 
 			final SRLParser parser;
@@ -152,6 +202,9 @@ public class EasySRL {
 				parser = parser2;
 			}
 
+			final SRLParser cachingParser = commandLineOptions.getSentenceCacheSize() > 0 ? new CachingSRLParser(
+					parser, commandLineOptions.getSentenceCacheSize()) : parser;
+
 			final InputReader reader = InputReader.make(InputFormat.valueOf(commandLineOptions.getInputFormat()
 					.toUpperCase()));
 			if ((outputFormat == OutputFormat.PROLOG || outputFormat == OutputFormat.EXTENDED)
@@ -159,15 +212,44 @@ public class EasySRL {
 				throw new Error("Must use \"-i POSandNERtagged\" for this output");
 			}
 
+			if (!commandLineOptions.getBatchInputs().isEmpty()) {
+				if (commandLineOptions.getOutputFolder().isEmpty()) {
+					throw new IllegalArgumentException("Batch mode needs an --outputFolder");
+				}
+
+				System.err.println("===Model loaded: parsing...===");
+				final Stopwatch timer = Stopwatch.createStarted();
+				final int parsedSentences = new BatchAnnotator(cachingParser, reader, outputFormat, Util.getFile(
+						commandLineOptions.getOutputFolder())).run(
+						BatchAnnotator.readInputList(Util.getFile(commandLineOptions.getBatchInputs())),
+						commandLineOptions.getShard());
+				System.err.println("Sentences parsed: " + parsedSentences);
+				System.err.println("Speed: "
+						+ new DecimalFormat("#.##").format(1000.0 * parsedSentences
+								/ timer.elapsed(TimeUnit.MILLISECONDS)) + " sentences per second");
+				if (metrics != null) {
+					metrics.writeTo(new File(commandLineOptions.getMetricsFile()));
+				}
+				return;
+			}
+
 			final boolean readingFromStdin;
 			final Iterator<String> inputLines;
+			final MappedInputFile mappedInput;
 			if (commandLineOptions.getInputFile().isEmpty()) {
 				// Read from STDIN
 				inputLines = new Scanner(System.in, "UTF-8");
+				mappedInput = null;
 				readingFromStdin = true;
+			} else if (!commandLineOptions.getInputFile().endsWith(".gz")) {
+				// Map the file, so that lines are decoded and tokenized by the parsing threads.
+				inputLines = null;
+				mappedInput = new MappedInputFile(Util.getFile(commandLineOptions.getInputFile()));
+				readingFromStdin = false;
 			} else {
 				// Read from file
 				inputLines = Util.readFile(Util.getFile(commandLineOptions.getInputFile())).iterator();
+				mappedInput = null;
 				readingFromStdin = false;
 			}
 			System.err.println("===Model loaded: parsing...===");
@@ -177,47 +259,70 @@ public class EasySRL {
 			final ExecutorService executorService = Executors.newFixedThreadPool(1// commandLineOptions.getThreads()
 					);
 
-			final BufferedWriter sysout = new BufferedWriter(new OutputStreamWriter(System.out));
+			final OutputWriter sysout;
+			final BinaryParseWriter binaryOut;
+			if (outputFormat == OutputFormat.BINARY) {
+				sysout = null;
+				binaryOut = new BinaryParseWriter(new BufferedOutputStream(System.out, 1 << 16), readingFromStdin);
+			} else {
+				sysout = new OutputWriter(System.out, readingFromStdin);
+				binaryOut = null;
+			}
 
 			int id = 0;
-			while (inputLines.hasNext()) {
-				// Read each sentence, either from STDIN or a parse.
-				final String line = inputLines instanceof Scanner ? ((Scanner) inputLines).nextLine().trim()
-						: inputLines.next();
-				if (!line.isEmpty() && !line.startsWith("#")) {
-					id++;
-					final int id2 = id;
-
-					// Make a new ExecutorService job for each sentence to parse.
-					executorService.execute(new Runnable() {
-						@Override
-						public void run() {
-
-							final List<CCGandSRLparse> parses = parser.parseTokens(reader.readInput(line)
-									.getInputWords());
-							final String output = printer.printJointParses(parses, id2);
-							parsedSentences.getAndIncrement();
-							synchronized (printer) {
-								try {
-									// It's a bit faster to buffer output than use
-									// System.out.println() directly.
-									sysout.write(output);
-									sysout.newLine();
-
-									if (readingFromStdin) {
-										sysout.flush();
-									}
-								} catch (final IOException e) {
-									throw new RuntimeException(e);
-								}
+			final Iterator<MappedInputFile.Line> mappedLines = mappedInput == null ? null : mappedInput.iterator();
+			while (mappedLines != null ? mappedLines.hasNext() : inputLines.hasNext()) {
+				// Read each sentence, either from STDIN or a file.
+				final Supplier<InputToParser> sentence;
+				if (mappedLines != null) {
+					final MappedInputFile.Line line = mappedLines.next();
+					if (line.isEmpty() || line.isComment()) {
+						continue;
+					}
+					sentence = () -> reader.readInput(line.getBuffer(), line.getOffset(), line.getLength());
+				} else {
+					final String line = inputLines instanceof Scanner ? ((Scanner) inputLines).nextLine().trim()
+							: inputLines.next();
+					if (line.isEmpty() || line.startsWith("#")) {
+						continue;
+					}
+					sentence = () -> reader.readInput(line);
+				}
+
+				id++;
+				final int id2 = id;
+
+				// Make a new ExecutorService job for each sentence to parse.
+				executorService.execute(new Runnable() {
+					@Override
+					public void run() {
+
+						final List<CCGandSRLparse> parses = cachingParser.parseTokens(sentence.get().getInputWords());
+						try {
+							if (binaryOut != null) {
+								binaryOut.write(parses, id2);
+							} else {
+								final StringBuilder output = OutputWriter.getBuilder();
+								printer.printJointParses(parses, id2, output);
+								sysout.write(output.append(System.lineSeparator()));
 							}
+							parsedSentences.getAndIncrement();
+						} catch (final IOException e) {
+							throw new RuntimeException(e);
 						}
-					});
-				}
+					}
+				});
 			}
 			executorService.shutdown();
 			executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
-			sysout.close();
+			if (mappedInput != null) {
+				mappedInput.close();
+			}
+			if (binaryOut != null) {
+				binaryOut.close();
+			} else {
+				sysout.close();
+			}
 
 			final DecimalFormat twoDP = new DecimalFormat("#.##");
 
@@ -225,10 +330,98 @@ public class EasySRL {
 			System.err.println("Speed: "
 					+ twoDP.format(1000.0 * parsedSentences.get() / timer.elapsed(TimeUnit.MILLISECONDS))
 					+ " sentences per second");
+			if (cachingParser instanceof CachingSRLParser) {
+				System.err.println("Sentence cache hit rate: "
+						+ twoDP.format(100.0 * ((CachingSRLParser) cachingParser).getStats().hitRate()) + "%");
+			}
+			if (metrics != null) {
+				metrics.writeTo(new File(commandLineOptions.getMetricsFile()));
+			}
 
 		} catch (final ArgumentValidationException e) {
 			System.err.println(e.getMessage());
 			System.err.println(CliFactory.createCli(CommandLineArguments.class).getHelpMessage());
+		} catch (final JMException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Writes output from parsing threads on a separate thread. Parsing threads encode their output into byte chunks,
+	 * which are queued for writing, so they don't need to hold a lock while output is written.
+	 */
+	private static class OutputWriter {
+		private final static ByteBuffer END = ByteBuffer.allocate(0);
+		private final static ThreadLocal<StringBuilder> threadLocalBuilder = ThreadLocal.withInitial(StringBuilder::new);
+		// Bounds the output waiting to be written, so that parsing threads wait if the output is slow.
+		private final static int MAX_QUEUED_CHUNKS = 1024;
+		private final BlockingQueue<ByteBuffer> chunks = new ArrayBlockingQueue<>(MAX_QUEUED_CHUNKS);
+		private final Thread thread;
+		private final Charset charset = Charset.defaultCharset();
+		private volatile IOException exception;
+
+		private OutputWriter(final OutputStream stream, final boolean flushEachChunk) {
+			thread = new Thread(() -> {
+				// It's a bit faster to buffer output than use System.out.println() directly.
+				final BufferedOutputStream out = new BufferedOutputStream(stream, 1 << 16);
+				try {
+					ByteBuffer chunk;
+					while ((chunk = chunks.take()) != END) {
+						out.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+						if (flushEachChunk && chunks.isEmpty()) {
+							out.flush();
+						}
+					}
+					out.flush();
+				} catch (final IOException e) {
+					exception = e;
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, "output-writer");
+			thread.start();
+		}
+
+		/**
+		 * Returns an empty StringBuilder, which is reused for each sentence on a thread.
+		 */
+		private static StringBuilder getBuilder() {
+			final StringBuilder result = threadLocalBuilder.get();
+			result.setLength(0);
+			return result;
+		}
+
+		/**
+		 * Queues output, waiting if too much is already queued.
+		 *
+		 * @throws IOException
+		 *             If writing earlier output failed.
+		 */
+		private void write(final CharSequence output) throws IOException {
+			final ByteBuffer chunk = charset.encode(CharBuffer.wrap(output));
+			try {
+				enqueue(chunk);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+
+		private void enqueue(final ByteBuffer chunk) throws IOException, InterruptedException {
+			// Check for failures while waiting, because the queue won't be emptied after the writer stops.
+			do {
+				if (exception != null) {
+					throw exception;
+				}
+			} while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS));
+		}
+
+		private void close() throws IOException, InterruptedException {
+			enqueue(END);
+			thread.join();
+			if (exception != null) {
+				throw exception;
+			}
 		}
 	}
 
@@ -240,14 +433,14 @@ public class EasySRL {
 			throw new IllegalArgumentException("Unknown parsing algorithm: " + o.getParsingAlgorithm());
 		}
 
-		return result.maximumSentenceLength(o.getMaxLength()).nBest(o.getNbest())
+		return result.maximumSentenceLength(o.getMaxLength()).nBest(o.getNbest()).lazyNbest(o.getLazyNbest())
 				.validRootCategories(o.getRootCategories()).supertaggerBeam(o.getSupertaggerbeam())
-				.supertaggerWeight(o.getSupertaggerWeight());
+				.supertaggerWeight(o.getSupertaggerWeight()).maxCachedForestBytes(o.getForestCacheMegabytes() << 20);
 	}
 
 	private static PipelineSRLParser makePipelineParser(final File folder,
 			final CommandLineArguments commandLineOptions, final double supertaggerBeam,
-			final boolean outputDependencies) throws IOException {
+			final boolean outputDependencies, final List<ParserListener> listeners) throws IOException {
 		final POSTagger posTagger = POSTagger.getStanfordTagger(new File(folder, "posTagger"));
 		final File labelClassifier = new File(folder, "labelClassifier");
 		final LabelClassifier classifier = labelClassifier.exists() && outputDependencies ? Util
@@ -255,6 +448,7 @@ public class EasySRL {
 
 				return new PipelineSRLParser(new ParserAStar.Builder(folder).maxChartSize(100000)
 				.supertaggerBeam(supertaggerBeam).nBest(commandLineOptions.getNbest())
+				.lazyNbest(commandLineOptions.getLazyNbest()).listeners(listeners)
 				.maximumSentenceLength(commandLineOptions.getMaxLength()).build(), classifier, posTagger);
 	}
 
@@ -358,7 +552,8 @@ public class EasySRL {
 
 			modelFactory = new SRLFactoredModelFactory(weights, Util.<FeatureSet> deserialize(
 					new File(modelFolder, "features")).setSupertaggingFeature(new File(modelFolder, "/pipeline"),
-					commandLineOptions.getSupertaggerbeam()), lexicalCategories, cutoffs, keyToIndex);
+					commandLineOptions.getSupertaggerbeam()), lexicalCategories, cutoffs, keyToIndex,
+					commandLineOptions.getForestCacheMegabytes() << 20);
 
 		} else {
 			final Tagger tagger = loadSupertagger ? Tagger.make(modelFolder, commandLineOptions.getSupertaggerbeam(),
@@ -6,6 +6,8 @@ import com.google.common.base.Stopwatch;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -147,6 +149,32 @@ public abstract class InputReader {
 
 	public abstract InputToParser readInput(String line);
 
+	private final static ThreadLocal<byte[]> threadLocalBytes = ThreadLocal.withInitial(() -> new byte[1 << 10]);
+
+	/**
+	 * Reads a UTF-8 encoded line from a slice of a buffer, such as a line of a MappedInputFile. The buffer is only read
+	 * with absolute gets, so it can be shared between threads. Override this to tokenize without decoding the whole
+	 * line.
+	 */
+	public InputToParser readInput(final ByteBuffer buffer, final int offset, final int length) {
+		return readInput(new String(copy(buffer, offset, length), 0, length, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Copies a slice of a buffer into an array that is reused for each call on a thread.
+	 */
+	static byte[] copy(final ByteBuffer buffer, final int offset, final int length) {
+		byte[] result = threadLocalBytes.get();
+		if (result.length < length) {
+			result = new byte[Math.max(length, 2 * result.length)];
+			threadLocalBytes.set(result);
+		}
+		final ByteBuffer slice = buffer.duplicate();
+		slice.position(offset);
+		slice.get(result, 0, length);
+		return result;
+	}
+
 	public static class InputToParser implements Serializable {
 		private static final long serialVersionUID = 1L;
 
@@ -222,6 +250,44 @@ public abstract class InputReader {
 			return InputToParser
 					.fromTokens(Arrays.asList(line.replaceAll("\"", "").replaceAll("  +", " ").trim().split(" ")));
 		}
+
+		/**
+		 * Tokenizes the line's bytes directly, giving the same tokens as readInput(String).
+		 */
+		@Override
+		public InputToParser readInput(final ByteBuffer buffer, final int offset, final int length) {
+			final byte[] bytes = copy(buffer, offset, length);
+
+			// Skip leading and trailing whitespace, ignoring quotes.
+			int start = 0;
+			while (start < length && (bytes[start] == '"' || (bytes[start] & 0xFF) <= ' ')) {
+				start++;
+			}
+			int end = length;
+			while (end > start && (bytes[end - 1] == '"' || (bytes[end - 1] & 0xFF) <= ' ')) {
+				end--;
+			}
+
+			final List<InputWord> words = new ArrayList<>();
+			int tokenEnd = start;
+			for (int i = start; i <= end; i++) {
+				if (i == end || bytes[i] == ' ') {
+					if (tokenEnd > start) {
+						words.add(new InputWord(new String(bytes, start, tokenEnd - start, StandardCharsets.UTF_8)));
+					}
+					start = i + 1;
+					tokenEnd = start;
+				} else if (bytes[i] != '"') {
+					// Remove quotes by compacting the token in place.
+					bytes[tokenEnd++] = bytes[i];
+				}
+			}
+
+			if (words.isEmpty()) {
+				words.add(new InputWord(""));
+			}
+			return new InputToParser(words, null, null, false);
+		}
 	}
 
 	/**
@@ -0,0 +1,150 @@
+package edu.uw.easysrl.main;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the lines of a large UTF-8 file by memory-mapping it. Iterating only scans for newlines, and returns each line
+ * as a slice of the mapped buffer, so decoding and tokenizing can be left to the threads that parse it (see
+ * InputReader.readInput(ByteBuffer, int, int)).
+ *
+ * Files larger than 2GB are mapped in regions. Each region starts at the beginning of a line, so lines never cross
+ * regions. Regions are unmapped when the slices that refer to them are garbage collected.
+ */
+public class MappedInputFile implements Iterable<MappedInputFile.Line>, Closeable {
+	private final static long MAX_REGION_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final long size;
+
+	public MappedInputFile(final File file) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.size = channel.size();
+	}
+
+	/**
+	 * A line of the file, excluding its line terminator. The buffer must only be read with absolute gets, because
+	 * lines in the same region share it between threads.
+	 */
+	public static class Line {
+		private final ByteBuffer buffer;
+		private final int offset;
+		private final int length;
+
+		private Line(final ByteBuffer buffer, final int offset, final int length) {
+			this.buffer = buffer;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		public ByteBuffer getBuffer() {
+			return buffer;
+		}
+
+		public int getOffset() {
+			return offset;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		public boolean isEmpty() {
+			return length == 0;
+		}
+
+		public boolean isComment() {
+			return length > 0 && buffer.get(offset) == '#';
+		}
+
+		@Override
+		public String toString() {
+			final byte[] bytes = new byte[length];
+			final ByteBuffer slice = buffer.duplicate();
+			slice.position(offset);
+			slice.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
+	@Override
+	public Iterator<Line> iterator() {
+		return new Iterator<Line>() {
+			private MappedByteBuffer region;
+			// Position of the region in the file.
+			private long regionStart = 0;
+			// Position of the next line in the region.
+			private int position = 0;
+
+			@Override
+			public boolean hasNext() {
+				return regionStart + position < size;
+			}
+
+			@Override
+			public Line next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				if (region == null) {
+					map(0);
+				}
+
+				int end = findNewline(position);
+				if (end == -1 && regionStart + region.limit() < size) {
+					// The line continues past the end of the region, so start a new region at the line.
+					map(regionStart + position);
+					end = findNewline(position);
+					if (end == -1 && regionStart + region.limit() < size) {
+						throw new UncheckedIOException(new IOException("Line too long at offset " + regionStart));
+					}
+				}
+
+				final int lineEnd = end == -1 ? region.limit() : end;
+				final int start = position;
+				position = end == -1 ? region.limit() : end + 1;
+
+				// Drop carriage returns, like BufferedReader.readLine().
+				final int length = lineEnd > start && region.get(lineEnd - 1) == '\r' ? lineEnd - start - 1 : lineEnd
+						- start;
+				return new Line(region, start, length);
+			}
+
+			private int findNewline(final int from) {
+				final int limit = region.limit();
+				for (int i = from; i < limit; i++) {
+					if (region.get(i) == '\n') {
+						return i;
+					}
+				}
+				return -1;
+			}
+
+			private void map(final long start) {
+				try {
+					region = channel.map(MapMode.READ_ONLY, start, Math.min(MAX_REGION_SIZE, size - start));
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				regionStart = start;
+				position = 0;
+			}
+		};
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -1,6 +1,8 @@
 package edu.uw.easysrl.main;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -36,10 +38,43 @@ public abstract class ParsePrinter {
 	public final static ParsePrinter SRL_PRINTER_WITH_INDICES = new SRLprinter(true);
 	public final static ParsePrinter LOGIC_PRINTER = new LogicPrinter();
 	public final static ParsePrinter DEPENDENCIES_PRINTER = new DependenciesPrinter();
+	public final static ParsePrinter JSON_PRINTER = new JSONPrinter(false);
+	public final static ParsePrinter JSON_PRINTER_WITH_LOGIC = new JSONPrinter(true);
 
 	public String print(final List<SyntaxTreeNode> parses, final int id) {
 		final StringBuilder result = new StringBuilder();
+		print(parses, id, result);
+		return result.toString();
+	}
+
+	private final static ThreadLocal<StringBuilder> threadLocalBuilder = ThreadLocal.withInitial(StringBuilder::new);
+	// Builders that grew larger than this for an unusual sentence are discarded, rather than being kept per thread.
+	private final static int MAX_REUSED_BUILDER_CAPACITY = 1 << 20;
+
+	/**
+	 * Streaming version of print(), which appends the output to the supplied Appendable. Output is built in a
+	 * StringBuilder that is reused for each call on a thread, or directly in the Appendable if it's a StringBuilder.
+	 */
+	public void print(final List<SyntaxTreeNode> parses, final int id, final Appendable out) throws IOException {
+		if (out instanceof StringBuilder) {
+			print(parses, id, (StringBuilder) out);
+			return;
+		}
 
+		final StringBuilder result = threadLocalBuilder.get();
+		result.setLength(0);
+		print(parses, id, result);
+		appendAndRelease(result, out);
+	}
+
+	private static void appendAndRelease(final StringBuilder result, final Appendable out) throws IOException {
+		out.append(result);
+		if (result.capacity() > MAX_REUSED_BUILDER_CAPACITY) {
+			threadLocalBuilder.remove();
+		}
+	}
+
+	private void print(final List<SyntaxTreeNode> parses, final int id, final StringBuilder result) {
 		if (parses == null) {
 			if (id > -1) {
 				printHeader(id, result);
@@ -62,7 +97,6 @@ public abstract class ParsePrinter {
 		}
 
 		printFooter(result);
-		return result.toString();
 	}
 
 	public String print(final SyntaxTreeNode entry, final int id) {
@@ -1055,10 +1089,239 @@ public abstract class ParsePrinter {
 
 	}
 
+	/**
+	 * Prints one JSON object per line for each sentence, containing its id and a list of parses. Each parse has its
+	 * score, tokens (with supertags), derivation tree, labelled dependencies, and optionally its logical form. Output is
+	 * written directly, without building a JSON tree.
+	 */
+	public static class JSONPrinter extends ParsePrinter {
+		private final boolean includeLogic;
+
+		JSONPrinter(final boolean includeLogic) {
+			this.includeLogic = includeLogic;
+		}
+
+		@Override
+		protected void appendJointParses(final List<CCGandSRLparse> parses, final int id, final StringBuilder result) {
+			result.append("{");
+			if (id > -1) {
+				result.append("\"id\":").append(id).append(",");
+			}
+			result.append("\"parses\":[");
+			if (parses != null) {
+				boolean isFirst = true;
+				for (final CCGandSRLparse parse : parses) {
+					if (isFirst) {
+						isFirst = false;
+					} else {
+						result.append(",");
+					}
+					appendParse(parse.getCcgParse(), parse.getDependencyParse(), parse.getScore(), result);
+				}
+			}
+			result.append("]}");
+		}
+
+		@Override
+		protected void printFileHeader(final StringBuilder result) {
+		}
+
+		/**
+		 * Parses printed without their joint SRL parse don't know their sentence ID, so failures are just an empty list.
+		 */
+		@Override
+		protected void printFailure(final StringBuilder result) {
+			result.append("{\"parses\":[]}");
+		}
+
+		@Override
+		protected void printHeader(final int id, final StringBuilder result) {
+		}
+
+		@Override
+		protected void printFooter(final StringBuilder result) {
+		}
+
+		@Override
+		protected void printParse(final SyntaxTreeNode parse, final int sentenceNumber, final StringBuilder result) {
+			result.append("{");
+			if (sentenceNumber > -1) {
+				result.append("\"id\":").append(sentenceNumber).append(",");
+			}
+			result.append("\"parses\":[");
+			appendParse(parse, parse.getAllLabelledDependencies(), Double.NaN, result);
+			result.append("]}");
+		}
+
+		private void appendParse(final SyntaxTreeNode parse, final Collection<ResolvedDependency> dependencies,
+				final double score, final StringBuilder result) {
+			result.append("{");
+			if (!Double.isNaN(score) && !Double.isInfinite(score)) {
+				result.append("\"score\":").append(score).append(",");
+			}
+
+			result.append("\"tokens\":[");
+			boolean isFirst = true;
+			for (final SyntaxTreeNodeLeaf leaf : parse.getLeaves()) {
+				if (isFirst) {
+					isFirst = false;
+				} else {
+					result.append(",");
+				}
+				result.append("{\"word\":");
+				appendString(leaf.getWord(), result);
+				result.append(",\"pos\":");
+				appendString(leaf.getPos(), result);
+				result.append(",\"ner\":");
+				appendString(leaf.getNER(), result);
+				result.append(",\"category\":");
+				appendString(leaf.getCategory().toString(), result);
+				result.append("}");
+			}
+
+			result.append("],\"tree\":");
+			appendTree(parse, result);
+
+			result.append(",\"dependencies\":[");
+			isFirst = true;
+			for (final ResolvedDependency dep : dependencies) {
+				if (isFirst) {
+					isFirst = false;
+				} else {
+					result.append(",");
+				}
+				result.append("{\"head\":").append(dep.getHead());
+				result.append(",\"argNumber\":").append(dep.getArgNumber());
+				result.append(",\"argument\":").append(dep.getArgument());
+				result.append(",\"category\":");
+				appendString(dep.getCategory().toString(), result);
+				result.append(",\"label\":");
+				appendString(dep.getSemanticRole() == null ? null : dep.getSemanticRole().toString(), result);
+				result.append(",\"preposition\":");
+				appendString(dep.getPreposition() == null ? null : dep.getPreposition().toString(), result);
+				result.append("}");
+			}
+			result.append("]");
+
+			if (includeLogic && parse.getSemantics().isPresent()) {
+				result.append(",\"logic\":");
+				appendString(parse.getSemantics().get().toString(), result);
+			}
+			result.append("}");
+		}
+
+		/**
+		 * Leaves refer to their token by index. Labelling nodes are skipped, because dependencies are printed
+		 * separately.
+		 */
+		private static void appendTree(final SyntaxTreeNode node, final StringBuilder result) {
+			if (node instanceof SyntaxTreeNodeLabelling) {
+				appendTree(node.getChild(0), result);
+				return;
+			}
+
+			result.append("{\"category\":");
+			appendString(node.getCategory().toString(), result);
+			if (node.isLeaf()) {
+				result.append(",\"token\":").append(((SyntaxTreeNodeLeaf) node).getSentencePosition());
+			} else {
+				result.append(",\"rule\":\"").append(node.getRuleType()).append("\"");
+				if (node.getChildren().size() == 2) {
+					result.append(",\"headIsLeft\":").append(node.getHeadIsLeft());
+				}
+				result.append(",\"children\":[");
+				boolean isFirst = true;
+				for (final SyntaxTreeNode child : node.getChildren()) {
+					if (isFirst) {
+						isFirst = false;
+					} else {
+						result.append(",");
+					}
+					appendTree(child, result);
+				}
+				result.append("]");
+			}
+			result.append("}");
+		}
+
+		private static void appendString(final String value, final StringBuilder result) {
+			if (value == null) {
+				result.append("null");
+				return;
+			}
+
+			result.append('"');
+			for (int i = 0; i < value.length(); i++) {
+				final char c = value.charAt(i);
+				switch (c) {
+				case '"':
+					result.append("\\\"");
+					break;
+				case '\\':
+					result.append("\\\\");
+					break;
+				case '\n':
+					result.append("\\n");
+					break;
+				case '\r':
+					result.append("\\r");
+					break;
+				case '\t':
+					result.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						result.append(String.format("\\u%04x", (int) c));
+					} else {
+						result.append(c);
+					}
+				}
+			}
+			result.append('"');
+		}
+
+		@Override
+		protected boolean outputsLogic() {
+			return includeLogic;
+		}
+
+		@Override
+		protected boolean outputsDependencies() {
+			return true;
+		}
+	}
+
 	protected abstract boolean outputsLogic();
 
 	public String printJointParses(final List<CCGandSRLparse> parses, final int id) {
-		return print(parses == null ? null : parses.stream().map(x -> x.getCcgParse()).collect(Collectors.toList()), id);
+		final StringBuilder result = new StringBuilder();
+		appendJointParses(parses, id, result);
+		return result.toString();
+	}
+
+	/**
+	 * Streaming version of printJointParses(), which appends the output to the supplied Appendable.
+	 */
+	public void printJointParses(final List<CCGandSRLparse> parses, final int id, final Appendable out)
+			throws IOException {
+		if (out instanceof StringBuilder) {
+			appendJointParses(parses, id, (StringBuilder) out);
+			return;
+		}
+
+		final StringBuilder result = threadLocalBuilder.get();
+		result.setLength(0);
+		appendJointParses(parses, id, result);
+		appendAndRelease(result, out);
+	}
+
+	/**
+	 * Override this to print the SRL dependencies or scores of joint parses. By default, only the CCG parses are
+	 * printed.
+	 */
+	protected void appendJointParses(final List<CCGandSRLparse> parses, final int id, final StringBuilder result) {
+		print(parses == null ? null : parses.stream().map(x -> x.getCcgParse()).collect(Collectors.toList()), id,
+				result);
 	}
 
 	/**
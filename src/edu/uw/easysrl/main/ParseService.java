@@ -0,0 +1,581 @@
+package edu.uw.easysrl.main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import uk.co.flamingpenguin.jewel.cli.ArgumentValidationException;
+import uk.co.flamingpenguin.jewel.cli.CliFactory;
+import uk.co.flamingpenguin.jewel.cli.Option;
+import edu.uw.easysrl.main.InputReader.InputToParser;
+import edu.uw.easysrl.main.InputReader.InputWord;
+import edu.uw.easysrl.syntax.evaluation.CCGBankEvaluation;
+import edu.uw.easysrl.syntax.parser.ParseDeadline;
+import edu.uw.easysrl.syntax.parser.ParserAStar;
+import edu.uw.easysrl.syntax.parser.SRLParser;
+import edu.uw.easysrl.syntax.parser.SRLParser.BackoffSRLParser;
+import edu.uw.easysrl.syntax.parser.SRLParser.CCGandSRLparse;
+import edu.uw.easysrl.syntax.parser.SRLParser.JointSRLParser;
+import edu.uw.easysrl.syntax.parser.SRLParser.PipelineSRLParser;
+import edu.uw.easysrl.syntax.tagger.POSTagger;
+import edu.uw.easysrl.syntax.tagger.Tagger;
+import edu.uw.easysrl.syntax.training.PipelineTrainer.LabelClassifier;
+import edu.uw.easysrl.util.Util;
+
+/**
+ * An HTTP service for parsing batches of sentences. POST a JSON object to /parse:
+ *
+ * <pre>
+ * {"sentences": ["A tokenized sentence .", ["Or", "a", "list", "of", "tokens"]], "timeoutMillis": 1000}
+ * </pre>
+ *
+ * The response contains one entry per sentence, in the format of ParsePrinter.JSON_PRINTER:
+ *
+ * <pre>
+ * {"timedOut": false, "sentences": [{"id": 0, "parses": [...]}, ...]}
+ * </pre>
+ *
+ * Request bodies are read and decoded on Jetty's threads, which give up on clients that are idle or take longer than
+ * READ_TIMEOUT_MILLIS to send the body. The decoded sentences are parsed on a bounded pool of worker threads, and the
+ * requests are completed asynchronously. If the pool's queue is full, requests are rejected with 503 (Service
+ * Unavailable). Each request has a deadline: the parser stops searching when it passes, and sentences that weren't
+ * parsed in time have no parses.
+ *
+ * With a pipeline model, sentences from concurrent requests are supertagged together by a SupertagBatcher before
+ * being handed to the parsing threads. Joint models score supertags as part of parsing, so they aren't batched.
+ */
+public class ParseService {
+	private final static int MAX_REQUEST_BYTES = 1 << 20;
+	private final static long READ_TIMEOUT_MILLIS = 10000;
+
+	public interface CommandLineArguments {
+		@Option(shortName = "p", defaultValue = "8080", description = "Port number")
+		int getPort();
+
+		@Option(shortName = "m", description = "Path to the parser model")
+		String getModel();
+
+		@Option(shortName = "t", defaultValue = "4", description = "(Optional) Number of parsing threads. Defaults to 4.")
+		int getThreads();
+
+		@Option(shortName = "q", defaultValue = "64", description = "(Optional) Maximum number of requests waiting for a parsing thread. Further requests are rejected with 503. Defaults to 64.")
+		int getQueueSize();
+
+		@Option(defaultValue = "10000", description = "(Optional) Maximum time to spend on a request in milliseconds, including time waiting for a parsing thread. Requests can ask for less. Defaults to 10000.")
+		long getTimeoutMillis();
+
+		@Option(shortName = "n", defaultValue = "1", description = "(Optional) Number of parses to return per sentence. Defaults to 1.")
+		int getNbest();
+
+		@Option(shortName = "l", defaultValue = "70", description = "(Optional) Maximum length of sentences in words. Defaults to 70.")
+		int getMaxLength();
+
+		@Option(defaultValue = "100", description = "(Optional) Maximum number of sentences per request. Defaults to 100.")
+		int getMaxSentences();
+
+		@Option(defaultValue = "32", description = "(Optional) Number of sentences from concurrent requests to supertag together, with a pipeline model. Use 1 to supertag each request separately. Defaults to 32.")
+		int getBatchSize();
+
+		@Option(defaultValue = "5", description = "(Optional) Maximum time in milliseconds to wait for more sentences to supertag together. Defaults to 5.")
+		long getBatchWaitMillis();
+
+		@Option(helpRequest = true, description = "Display this message", shortName = "h")
+		boolean getHelp();
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final CommandLineArguments commandLineOptions;
+		try {
+			commandLineOptions = CliFactory.parseArguments(CommandLineArguments.class, args);
+		} catch (final ArgumentValidationException e) {
+			System.err.println(e.getMessage());
+			System.err.println(CliFactory.createCli(CommandLineArguments.class).getHelpMessage());
+			return;
+		}
+
+		final File modelFolder = Util.getFile(commandLineOptions.getModel());
+		final File pipelineFolder = new File(modelFolder, "pipeline");
+		final POSTagger posTagger = POSTagger.getStanfordTagger(new File(pipelineFolder.exists() ? pipelineFolder
+				: modelFolder, "posTagger"));
+		final boolean batchSupertagging = !pipelineFolder.exists() && commandLineOptions.getBatchSize() > 1;
+		final ParserAStar.Builder pipelineBuilder = new ParserAStar.Builder(pipelineFolder.exists() ? pipelineFolder
+				: modelFolder).supertaggerBeam(0.000001).nBest(commandLineOptions.getNbest())
+				.maximumSentenceLength(commandLineOptions.getMaxLength())
+				.listeners(Collections.singletonList(new ParseDeadline()));
+		final SupertagBatcher batcher;
+		if (batchSupertagging) {
+			// The parser uses the batcher's supertags, instead of loading its own supertagger.
+			pipelineBuilder.useSupertaggedInput();
+			batcher = new SupertagBatcher(Tagger.make(modelFolder, pipelineBuilder.getSupertaggerBeam(), 50,
+					pipelineBuilder.getCutoffs()), commandLineOptions.getBatchSize(), TimeUnit.MILLISECONDS
+					.toNanos(commandLineOptions.getBatchWaitMillis()), commandLineOptions.getQueueSize());
+		} else {
+			batcher = null;
+		}
+
+		final SRLParser parser = makeParser(modelFolder, pipelineBuilder, posTagger, commandLineOptions);
+		final AtomicInteger threadNumber = new AtomicInteger();
+		final ThreadPoolExecutor workers = new ThreadPoolExecutor(commandLineOptions.getThreads(),
+				commandLineOptions.getThreads(), 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(
+						commandLineOptions.getQueueSize()), runnable -> {
+					final Thread thread = new Thread(runnable, "parser-" + threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				});
+
+		final ServletContextHandler context = new ServletContextHandler();
+		final ServletHolder holder = new ServletHolder(new ParseServlet(parser, workers, batcher, posTagger,
+				TimeUnit.MILLISECONDS.toNanos(commandLineOptions.getTimeoutMillis()), commandLineOptions
+						.getMaxSentences()));
+		holder.setAsyncSupported(true);
+		context.addServlet(holder, "/parse");
+
+		final Server server = new Server();
+		final ServerConnector connector = new ServerConnector(server);
+		connector.setPort(commandLineOptions.getPort());
+		// Fails blocking reads of request bodies from clients that stop sending. Connections waiting for an
+		// asynchronous response aren't reading, so they aren't affected.
+		connector.setIdleTimeout(READ_TIMEOUT_MILLIS);
+		server.addConnector(connector);
+		server.setHandler(context);
+		server.start();
+		System.err.println("Parse service listening on port " + commandLineOptions.getPort());
+		server.join();
+	}
+
+	private static SRLParser makeParser(final File modelFolder, final ParserAStar.Builder pipelineBuilder,
+			final POSTagger posTagger, final CommandLineArguments commandLineOptions) throws IOException {
+		final File labelClassifierFile = new File(pipelineBuilder.getModelFolder(), "labelClassifier");
+		final LabelClassifier labelClassifier = labelClassifierFile.exists() ? Util.deserialize(labelClassifierFile)
+				: CCGBankEvaluation.dummyLabelClassifier;
+		final PipelineSRLParser pipeline = new PipelineSRLParser(pipelineBuilder.build(), labelClassifier, posTagger);
+		if (pipelineBuilder.getModelFolder().equals(modelFolder)) {
+			return pipeline;
+		}
+
+		// Joint model, backing off to the pipeline.
+		return new BackoffSRLParser(new JointSRLParser(new ParserAStar.Builder(modelFolder)
+				.nBest(commandLineOptions.getNbest()).maximumSentenceLength(commandLineOptions.getMaxLength())
+				.listeners(pipelineBuilder.getListeners()).build(), posTagger), pipeline);
+	}
+
+	private static class ParseServlet extends HttpServlet {
+		private static final long serialVersionUID = 1L;
+		private final SRLParser parser;
+		private final ThreadPoolExecutor workers;
+		// Null if sentences are supertagged by the parser.
+		private final SupertagBatcher batcher;
+		private final POSTagger posTagger;
+		private final long maxTimeoutNanos;
+		private final int maxSentences;
+
+		private ParseServlet(final SRLParser parser, final ThreadPoolExecutor workers, final SupertagBatcher batcher,
+				final POSTagger posTagger, final long maxTimeoutNanos, final int maxSentences) {
+			this.parser = parser;
+			this.workers = workers;
+			this.batcher = batcher;
+			this.posTagger = posTagger;
+			this.maxTimeoutNanos = maxTimeoutNanos;
+			this.maxSentences = maxSentences;
+		}
+
+		/**
+		 * Reads and decodes the request on Jetty's thread, so that slow uploads don't hold a parsing thread, and then
+		 * parses its sentences on a worker, or queues them for supertagging.
+		 */
+		@Override
+		protected void doPost(final HttpServletRequest request, final HttpServletResponse response) {
+			final long start = System.nanoTime();
+			final List<List<InputWord>> sentences;
+			final long deadline;
+			try {
+				final Map<?, ?> json = (Map<?, ?>) new JSONReader(readBody(request.getInputStream(), start
+						+ TimeUnit.MILLISECONDS.toNanos(READ_TIMEOUT_MILLIS))).read();
+				sentences = getSentences(json.get("sentences"));
+				final Object timeoutMillis = json.get("timeoutMillis");
+				deadline = start
+						+ (timeoutMillis == null ? maxTimeoutNanos : Math.min(maxTimeoutNanos, TimeUnit.MILLISECONDS
+								.toNanos(((Number) timeoutMillis).longValue())));
+			} catch (final IOException e) {
+				write(response, HttpServletResponse.SC_BAD_REQUEST,
+						errorJson("Unable to read request: " + e.getMessage()));
+				return;
+			} catch (final RuntimeException e) {
+				write(response, HttpServletResponse.SC_BAD_REQUEST,
+						errorJson("Invalid request: " + e.getMessage()));
+				return;
+			}
+
+			final AsyncContext async = request.startAsync();
+			// Parsing stops at each request's deadline, so the async timeout is only a backstop.
+			async.setTimeout(TimeUnit.NANOSECONDS.toMillis(maxTimeoutNanos) + 10000);
+			final AtomicBoolean completed = new AtomicBoolean();
+			async.addListener(new AsyncListener() {
+				@Override
+				public void onTimeout(final AsyncEvent event) throws IOException {
+					complete(async, completed, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+							errorJson("Request timed out"));
+				}
+
+				@Override
+				public void onStartAsync(final AsyncEvent event) {
+				}
+
+				@Override
+				public void onError(final AsyncEvent event) {
+				}
+
+				@Override
+				public void onComplete(final AsyncEvent event) {
+				}
+			});
+
+			if (batcher == null) {
+				final List<InputToParser> inputs = new ArrayList<>(sentences.size());
+				for (final List<InputWord> words : sentences) {
+					inputs.add(new InputToParser(words, null, null, false));
+				}
+				submit(inputs, deadline, async, completed);
+				return;
+			}
+
+			// Supertag the sentences along with other requests' sentences, and then parse them on a worker.
+			final List<List<InputWord>> toTag = new ArrayList<>(sentences.size());
+			for (final List<InputWord> words : sentences) {
+				if (isParseable(words)) {
+					toTag.add(posTagger.tag(words));
+				}
+			}
+			try {
+				batcher.tag(toTag).whenComplete((tagged, error) -> {
+					if (error != null) {
+						complete(async, completed, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+								errorJson("Supertagging failed: " + error.getMessage()));
+						return;
+					}
+
+					final List<InputToParser> inputs = new ArrayList<>(sentences.size());
+					int index = 0;
+					for (final List<InputWord> words : sentences) {
+						inputs.add(isParseable(words) ? tagged.get(index++) : new InputToParser(words, null, null,
+								false));
+					}
+					submit(inputs, deadline, async, completed);
+				});
+			} catch (final RejectedExecutionException e) {
+				complete(async, completed, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+						errorJson("Too many requests"));
+			}
+		}
+
+		private boolean isParseable(final List<InputWord> words) {
+			return !words.isEmpty() && words.size() <= parser.getMaxSentenceLength();
+		}
+
+		private void submit(final List<InputToParser> sentences, final long deadline, final AsyncContext async,
+				final AtomicBoolean completed) {
+			try {
+				workers.execute(() -> parseAndComplete(sentences, deadline, async, completed));
+			} catch (final RejectedExecutionException e) {
+				complete(async, completed, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+						errorJson("Too many requests"));
+			}
+		}
+
+		private void parseAndComplete(final List<InputToParser> sentences, final long deadline,
+				final AsyncContext async, final AtomicBoolean completed) {
+			if (System.nanoTime() - deadline > 0) {
+				complete(async, completed, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+						errorJson("Request timed out while waiting for a parsing thread"));
+			} else {
+				complete(async, completed, HttpServletResponse.SC_OK, parse(sentences, deadline));
+			}
+		}
+
+		private String parse(final List<InputToParser> sentences, final long deadline) {
+			final StringBuilder result = new StringBuilder();
+			result.append("{\"sentences\":[");
+			boolean timedOut = false;
+			ParseDeadline.set(deadline);
+			try {
+				for (int i = 0; i < sentences.size(); i++) {
+					if (i > 0) {
+						result.append(",");
+					}
+					final InputToParser input = sentences.get(i);
+					List<CCGandSRLparse> parses = null;
+					if (ParseDeadline.hasPassed()) {
+						timedOut = true;
+					} else if (isParseable(input.getInputWords())) {
+						parses = parser.parseTokens(input);
+						timedOut = timedOut || ParseDeadline.hasPassed();
+					}
+					ParsePrinter.JSON_PRINTER.printJointParses(parses, i, result);
+				}
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			} finally {
+				ParseDeadline.clear();
+			}
+			result.append("],\"timedOut\":").append(timedOut).append("}");
+			return result.toString();
+		}
+
+		/**
+		 * Sends a response, unless one was already sent (e.g. if the request timed out).
+		 */
+		private static void complete(final AsyncContext async, final AtomicBoolean completed, final int status,
+				final String json) {
+			if (!completed.compareAndSet(false, true)) {
+				return;
+			}
+
+			try {
+				write((HttpServletResponse) async.getResponse(), status, json);
+			} finally {
+				async.complete();
+			}
+		}
+
+		private static void write(final HttpServletResponse response, final int status, final String json) {
+			try {
+				response.setStatus(status);
+				response.setContentType("application/json; charset=utf-8");
+				response.getOutputStream().write(json.getBytes(StandardCharsets.UTF_8));
+			} catch (final IOException e) {
+				// The client went away.
+			}
+		}
+
+		private static String errorJson(final String message) {
+			return "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+		}
+
+		private List<List<InputWord>> getSentences(final Object json) {
+			if (!(json instanceof List)) {
+				throw new IllegalArgumentException("expected a list of sentences");
+			}
+			final List<?> list = (List<?>) json;
+			if (list.size() > maxSentences) {
+				throw new IllegalArgumentException("at most " + maxSentences + " sentences are allowed");
+			}
+
+			final List<List<InputWord>> result = new ArrayList<>(list.size());
+			for (final Object sentence : list) {
+				final List<String> tokens = new ArrayList<>();
+				if (sentence instanceof String) {
+					for (final String token : ((String) sentence).trim().split("\\s+")) {
+						if (!token.isEmpty()) {
+							tokens.add(token);
+						}
+					}
+				} else if (sentence instanceof List) {
+					for (final Object token : (List<?>) sentence) {
+						tokens.add((String) token);
+					}
+				} else {
+					throw new IllegalArgumentException("expected a sentence string or list of tokens");
+				}
+				result.add(InputWord.listOf(tokens));
+			}
+			return result;
+		}
+
+		/**
+		 * Reads the request body, giving up if it's too large or still arriving at the deadline. Each read is also
+		 * bounded by the connector's idle timeout.
+		 */
+		private static String readBody(final InputStream in, final long deadline) throws IOException {
+			final ByteArrayOutputStream result = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				result.write(buffer, 0, read);
+				if (result.size() > MAX_REQUEST_BYTES) {
+					throw new IllegalArgumentException("request is larger than " + MAX_REQUEST_BYTES + " bytes");
+				}
+				if (System.nanoTime() - deadline > 0) {
+					throw new IOException("request took longer than " + READ_TIMEOUT_MILLIS + "ms to send");
+				}
+			}
+			return new String(result.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Minimal JSON parser for requests. Returns Maps, Lists, Strings, Doubles, Booleans and nulls. Objects and arrays
+	 * can be nested at most MAX_DEPTH deep, so that the recursion can't overflow the stack.
+	 */
+	private static class JSONReader {
+		private final static int MAX_DEPTH = 32;
+		private final String json;
+		private int position = 0;
+		private int depth = 0;
+
+		private JSONReader(final String json) {
+			this.json = json;
+		}
+
+		private Object read() {
+			final Object result = readValue();
+			skipWhitespace();
+			if (position != json.length()) {
+				throw new IllegalArgumentException("unexpected text at " + position);
+			}
+			return result;
+		}
+
+		private Object readValue() {
+			skipWhitespace();
+			if (position == json.length()) {
+				throw new IllegalArgumentException("unexpected end of input");
+			}
+
+			final char c = json.charAt(position);
+			if (c == '{' || c == '[') {
+				if (depth == MAX_DEPTH) {
+					throw new IllegalArgumentException("input is nested more than " + MAX_DEPTH + " deep");
+				}
+				depth++;
+				final Object result = c == '{' ? readObject() : readArray();
+				depth--;
+				return result;
+			} else if (c == '"') {
+				return readString();
+			} else if (json.startsWith("true", position)) {
+				position += 4;
+				return true;
+			} else if (json.startsWith("false", position)) {
+				position += 5;
+				return false;
+			} else if (json.startsWith("null", position)) {
+				position += 4;
+				return null;
+			} else {
+				final int start = position;
+				while (position < json.length() && "+-0123456789.eE".indexOf(json.charAt(position)) > -1) {
+					position++;
+				}
+				return Double.valueOf(json.substring(start, position));
+			}
+		}
+
+		private Map<String, Object> readObject() {
+			final Map<String, Object> result = new LinkedHashMap<>();
+			position++;
+			skipWhitespace();
+			if (json.charAt(position) == '}') {
+				position++;
+				return result;
+			}
+			while (true) {
+				skipWhitespace();
+				final String key = readString();
+				skipWhitespace();
+				expect(':');
+				result.put(key, readValue());
+				skipWhitespace();
+				if (json.charAt(position) == '}') {
+					position++;
+					return result;
+				}
+				expect(',');
+			}
+		}
+
+		private List<Object> readArray() {
+			final List<Object> result = new ArrayList<>();
+			position++;
+			skipWhitespace();
+			if (json.charAt(position) == ']') {
+				position++;
+				return result;
+			}
+			while (true) {
+				result.add(readValue());
+				skipWhitespace();
+				if (json.charAt(position) == ']') {
+					position++;
+					return result;
+				}
+				expect(',');
+			}
+		}
+
+		private String readString() {
+			expect('"');
+			final StringBuilder result = new StringBuilder();
+			while (true) {
+				final char c = json.charAt(position++);
+				if (c == '"') {
+					return result.toString();
+				} else if (c == '\\') {
+					final char escaped = json.charAt(position++);
+					switch (escaped) {
+					case 'n':
+						result.append('\n');
+						break;
+					case 't':
+						result.append('\t');
+						break;
+					case 'r':
+						result.append('\r');
+						break;
+					case 'b':
+						result.append('\b');
+						break;
+					case 'f':
+						result.append('\f');
+						break;
+					case 'u':
+						result.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+						position += 4;
+						break;
+					default:
+						result.append(escaped);
+					}
+				} else {
+					result.append(c);
+				}
+			}
+		}
+
+		private void expect(final char c) {
+			if (position >= json.length() || json.charAt(position) != c) {
+				throw new IllegalArgumentException("expected '" + c + "' at " + position);
+			}
+			position++;
+		}
+
+		private void skipWhitespace() {
+			while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+				position++;
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package edu.uw.easysrl.main;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import edu.uw.easysrl.main.InputReader.InputToParser;
+import edu.uw.easysrl.main.InputReader.InputWord;
+import edu.uw.easysrl.syntax.tagger.Tagger;
+import edu.uw.easysrl.syntax.tagger.Tagger.ScoredCategory;
+
+/**
+ * Supertags sentences from concurrent requests together. Requests are collected until the batch has enough sentences,
+ * or the first request has waited long enough, and then the whole batch is tagged with one call to
+ * Tagger.tagBatch(). This is much faster than tagging each sentence separately for taggers that evaluate sentences in
+ * batches, such as TaggerflowLSTM and TaggerflowRemoteLSTM.
+ *
+ * The tagger is only used from the batching thread, so it doesn't need to be thread-safe.
+ */
+public class SupertagBatcher implements Closeable {
+	private final Tagger tagger;
+	private final int maxBatchSize;
+	private final long maxWaitNanos;
+	private final BlockingQueue<Request> queue;
+	private final Thread thread;
+
+	private static class Request {
+		private final List<List<InputWord>> sentences;
+		private final CompletableFuture<List<InputToParser>> result = new CompletableFuture<>();
+
+		private Request(final List<List<InputWord>> sentences) {
+			this.sentences = sentences;
+		}
+	}
+
+	/**
+	 * @param maxBatchSize
+	 *            Number of sentences to collect before tagging. Batches can be larger if a request contains more
+	 *            sentences, because requests are never split.
+	 * @param maxWaitNanos
+	 *            Maximum time to wait for more requests, after the first request in a batch arrives.
+	 * @param maxQueuedRequests
+	 *            Maximum number of requests waiting to be tagged.
+	 */
+	public SupertagBatcher(final Tagger tagger, final int maxBatchSize, final long maxWaitNanos,
+			final int maxQueuedRequests) {
+		this.tagger = tagger;
+		this.maxBatchSize = maxBatchSize;
+		this.maxWaitNanos = maxWaitNanos;
+		this.queue = new ArrayBlockingQueue<>(maxQueuedRequests);
+		this.thread = new Thread(this::run, "supertagger");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues sentences for tagging. The sentences should already be POS-tagged, if the tagger uses POS tags.
+	 *
+	 * @return The sentences with their supertags, in the same order.
+	 * @throws RejectedExecutionException
+	 *             If too many requests are waiting to be tagged.
+	 */
+	public CompletableFuture<List<InputToParser>> tag(final List<List<InputWord>> sentences) {
+		final Request request = new Request(sentences);
+		if (!queue.offer(request)) {
+			throw new RejectedExecutionException("Too many requests waiting for the supertagger");
+		}
+		return request.result;
+	}
+
+	private void run() {
+		final List<Request> batch = new ArrayList<>();
+		try {
+			while (true) {
+				batch.clear();
+				batch.add(queue.take());
+				int size = batch.get(0).sentences.size();
+				final long deadline = System.nanoTime() + maxWaitNanos;
+				while (size < maxBatchSize) {
+					final Request next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+					size += next.sentences.size();
+				}
+				tagBatch(batch);
+			}
+		} catch (final InterruptedException e) {
+			for (final Request request : batch) {
+				request.result.completeExceptionally(e);
+			}
+		}
+	}
+
+	private void tagBatch(final List<Request> batch) {
+		final List<List<InputWord>> sentences = new ArrayList<>();
+		for (final Request request : batch) {
+			sentences.addAll(request.sentences);
+		}
+
+		final List<List<List<ScoredCategory>>> tags;
+		try {
+			// Collect the results here, because tagBatch() can return a lazy stream.
+			tags = tagger.tagBatch(sentences.stream()).collect(Collectors.toList());
+		} catch (final RuntimeException e) {
+			for (final Request request : batch) {
+				request.result.completeExceptionally(e);
+			}
+			return;
+		}
+
+		int index = 0;
+		for (final Request request : batch) {
+			final List<InputToParser> result = new ArrayList<>(request.sentences.size());
+			for (final List<InputWord> words : request.sentences) {
+				result.add(new InputToParser(words, null, tags.get(index), true));
+				index++;
+			}
+			// Completing the future runs the request's next stage on this thread, so it should be quick.
+			request.result.complete(result);
+		}
+	}
+
+	@Override
+	public void close() {
+		thread.interrupt();
+	}
+}
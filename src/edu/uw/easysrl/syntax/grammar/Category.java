@@ -2,11 +2,13 @@ package edu.uw.easysrl.syntax.grammar;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 import com.google.common.collect.ImmutableSet;
 
@@ -21,7 +23,14 @@ public abstract class Category implements Serializable, Comparable<Category> {
 	private final static Set<String> bracketAndQuoteCategories = ImmutableSet.of("LRB", "RRB", "LQU", "RQU");
 	private final static AtomicInteger numCats = new AtomicInteger();
 
-	private final static Map<String, Category> cache = new HashMap<>();
+	// Interned categories, keyed by every string that has been used to look them up.
+	private final static Map<String, Category> cache = new ConcurrentHashMap<>();
+	// Interned categories indexed by ID. Entries can be null for categories that lost a race to be interned.
+	private static volatile Category[] idToCategory = new Category[0];
+
+	private final static Pattern COINDEXATION = Pattern.compile("_[0-9]+");
+	private final static Pattern HEAD_MARKER = Pattern.compile(":B");
+	private final static Pattern LEXICAL_HEAD = Pattern.compile("\\{_\\*\\}");
 
 	public static final Category COMMA = valueOf(",");
 	public static final Category CONJ = valueOf("conj");
@@ -55,6 +64,21 @@ public abstract class Category implements Serializable, Comparable<Category> {
 		return numCats.get();
 	}
 
+	/**
+	 * Returns the interned category with the given ID, or null if there isn't one.
+	 */
+	public static Category fromID(final int id) {
+		final Category[] categories = idToCategory;
+		return id < categories.length ? categories[id] : null;
+	}
+
+	private static synchronized void register(final Category category) {
+		if (category.id >= idToCategory.length) {
+			idToCategory = Arrays.copyOf(idToCategory, Math.max(category.id + 1, 2 * idToCategory.length));
+		}
+		idToCategory[category.id] = category;
+	}
+
 	public enum Slash {
 		FWD, BWD, EITHER;
 		@Override
@@ -95,47 +119,41 @@ public abstract class Category implements Serializable, Comparable<Category> {
 
 	public static Category valueOf(final String cat) {
 
-		// Tries to guarantee that equal categories are identical objects.
-		// TODO simplify this
+		// Guarantees that equal categories are identical objects.
 		Category result = cache.get(cat);
 		if (result == null) {
-
-			String name;
-			name = dropMarkup(cat);
-			name = Util.dropBrackets(name);
+			final String name = Util.dropBrackets(dropMarkup(cat));
 			result = cache.get(name);
 
 			if (result == null) {
 				result = Category.valueOfUncached(name);
-
-				synchronized (cache) {
-					final Category existing = cache.get(result.asString);
-					if (existing != null) {
-						result = existing;
-					} else {
-						cache.put(result.asString, result);
-					}
+				final Category existing = cache.putIfAbsent(result.asString, result);
+				if (existing != null) {
+					result = existing;
+				} else {
+					register(result);
 				}
 
 				if (name != cat) {
-					synchronized (cache) {
-						cache.put(name, result);
-					}
+					cache.putIfAbsent(name, result);
 				}
 			}
 
-			synchronized (cache) {
-				cache.put(cat, result);
-			}
+			cache.putIfAbsent(cat, result);
 		}
 
 		return result;
 	}
 
 	private static String dropMarkup(final String withMarkUp) {
-		String withoutMarkup = withMarkUp.replaceAll("_[0-9]+", "");
-		withoutMarkup = withoutMarkup.replaceAll(":B", "");
-		withoutMarkup = withoutMarkup.replaceAll("\\{_\\*\\}", "");
+		if (withMarkUp.indexOf('_') == -1 && withMarkUp.indexOf(':') == -1) {
+			// Most categories, e.g. from corpora, don't have any markup.
+			return withMarkUp;
+		}
+
+		String withoutMarkup = COINDEXATION.matcher(withMarkUp).replaceAll("");
+		withoutMarkup = HEAD_MARKER.matcher(withoutMarkup).replaceAll("");
+		withoutMarkup = LEXICAL_HEAD.matcher(withoutMarkup).replaceAll("");
 		return withoutMarkup;
 	}
 
@@ -645,6 +663,23 @@ public abstract class Category implements Serializable, Comparable<Category> {
 		return this;
 	}
 
+	// Cached result of withoutNB().
+	private transient Category withoutNB;
+
+	/**
+	 * Returns the category with all [nb] features removed, which aren't helpful for combining categories. The result
+	 * is computed once per category.
+	 */
+	public Category withoutNB() {
+		Category result = withoutNB;
+		if (result == null) {
+			final String name = toString();
+			result = name.contains("[nb]") ? valueOf(name.replace("[nb]", "")) : this;
+			withoutNB = result;
+		}
+		return result;
+	}
+
 	@Override
 	/**
 	 * Implementing Comparable for use in TreeMaps.
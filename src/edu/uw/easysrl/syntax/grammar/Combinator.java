@@ -10,6 +10,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import edu.uw.easysrl.dependencies.DependencyStructure;
 import edu.uw.easysrl.dependencies.UnlabelledDependency;
@@ -25,6 +26,7 @@ import edu.uw.easysrl.semantics.Sentence;
 import edu.uw.easysrl.semantics.Set;
 import edu.uw.easysrl.semantics.Variable;
 import edu.uw.easysrl.syntax.grammar.Category.Slash;
+import edu.uw.easysrl.util.CopyOnWriteTable;
 import edu.uw.easysrl.util.Util;
 
 public abstract class Combinator {
@@ -153,8 +155,8 @@ public abstract class Combinator {
 	 */
 	public static List<RuleProduction> getRules(Category left, Category right, final Collection<Combinator> rules) {
 		// [nb] feature is not helpful.
-		left = Category.valueOf(left.toString().replace("[nb]", ""));
-		right = Category.valueOf(right.toString().replace("[nb]", ""));
+		left = left.withoutNB();
+		right = right.withoutNB();
 
 		final List<RuleProduction> result = new ArrayList<>(2);
 		for (final Combinator c : rules) {
@@ -170,6 +172,67 @@ public abstract class Combinator {
 		return result;
 	}
 
+	static RuleProduction makeProduction(final Combinator combinator, final Category result, final boolean headIsLeft) {
+		return new RuleProduction(combinator.ruleType, result, headIsLeft, combinator);
+	}
+
+	/**
+	 * Thread-safe cache of the rules that can apply to each pair of categories, in arrays indexed by category IDs.
+	 * Pairs in an optional precomputed GrammarClosure are looked up there instead.
+	 */
+	public static class RuleTable {
+		private final static int MAX_CACHED_CATEGORY_ID = 4096;
+
+		private final Collection<Combinator> rules;
+		// Rows are indexed by the left category ID, and columns by the right. Null means not computed yet.
+		private final CopyOnWriteTable<AtomicReferenceArray<List<RuleProduction>>> leftToRightToRules = CopyOnWriteTable
+				.ofReferences(MAX_CACHED_CATEGORY_ID);
+		private final GrammarClosure closure;
+
+		public RuleTable(final Collection<Combinator> rules) {
+			this(rules, null);
+		}
+
+		public RuleTable(final Collection<Combinator> rules, final GrammarClosure closure) {
+			this.rules = rules;
+			this.closure = closure;
+		}
+
+		public List<RuleProduction> getRules(final Category left, final Category right) {
+			if (closure != null) {
+				final List<RuleProduction> result = closure.getRules(left, right);
+				if (result != null) {
+					return result;
+				}
+			}
+
+			final int leftID = left.getID();
+			final int rightID = right.getID();
+			final AtomicReferenceArray<List<RuleProduction>> row = leftToRightToRules.getRowIfPresent(leftID, rightID);
+			if (row != null) {
+				final List<RuleProduction> result = row.get(rightID);
+				if (result != null) {
+					return result;
+				}
+			}
+
+			final List<RuleProduction> result = Combinator.getRules(left, right, rules);
+			if (leftToRightToRules.isStored(leftID, rightID)) {
+				leftToRightToRules.getRow(leftID, rightID).set(rightID, result);
+			}
+			return result;
+		}
+	}
+
+	private final static RuleTable standardRuleTable = new RuleTable(STANDARD_COMBINATORS);
+
+	/**
+	 * Returns the rules from STANDARD_COMBINATORS that can apply to a pair of categories, using a shared cache.
+	 */
+	public static List<RuleProduction> getStandardRules(final Category left, final Category right) {
+		return standardRuleTable.getRules(left, right);
+	}
+
 	private static class CommaAndVPtoNPmodifier extends Combinator {
 		private final Collection<Category> verbPhrases = new HashSet<>(Arrays.asList(Category.valueOf("S[ng]\\NP"), // PV
 				// ,
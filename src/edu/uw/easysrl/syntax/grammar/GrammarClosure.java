@@ -0,0 +1,274 @@
+package edu.uw.easysrl.syntax.grammar;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.carrotsearch.hppc.IntObjectHashMap;
+import com.carrotsearch.hppc.cursors.IntObjectCursor;
+import com.carrotsearch.hppc.cursors.ObjectCursor;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleProduction;
+import edu.uw.easysrl.syntax.parser.AbstractParser;
+import edu.uw.easysrl.syntax.parser.AbstractParser.UnaryRule;
+import edu.uw.easysrl.syntax.tagger.TaggerEmbeddings;
+import edu.uw.easysrl.util.Util;
+
+/**
+ * The set of categories reachable from a model's lexical categories and unary rules under the binary combinators,
+ * along with the rules that apply between each pair of them. The closure is computed offline (see main()) and saved
+ * in the model folder, so that parsers can look rules up without computing them.
+ *
+ * Categories are saved as strings, because category IDs aren't stable across JVMs. They are given dense indices when
+ * the file is loaded.
+ */
+public class GrammarClosure {
+	public final static String FILE_NAME = "grammarClosure";
+	private final static int DEFAULT_MAX_ARITY = 4;
+	private final static int MAX_CATEGORIES = 10000;
+
+	/**
+	 * Computes the closure for a model, and saves it in the model folder.
+	 *
+	 * Usage: GrammarClosure model_folder [max_arity]
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: GrammarClosure model_folder [max_arity]");
+			return;
+		}
+
+		final File modelFolder = new File(args[0]);
+		final int maxArity = args.length > 1 ? Integer.valueOf(args[1]) : DEFAULT_MAX_ARITY;
+		final List<Category> lexicalCategories = TaggerEmbeddings.loadCategories(new File(modelFolder, "categories"));
+		final Multimap<Category, Category> unaryRules = HashMultimap.create();
+		for (final Map.Entry<Category, UnaryRule> entry : AbstractParser.loadUnaryRules(
+				new File(modelFolder, "unaryRules")).entries()) {
+			unaryRules.put(entry.getKey(), entry.getValue().getCategory());
+		}
+
+		final GrammarClosure closure = compute(lexicalCategories, unaryRules,
+				new ArrayList<>(Combinator.STANDARD_COMBINATORS), maxArity);
+		closure.save(new File(modelFolder, FILE_NAME));
+		System.out.println("Categories: " + closure.categories.size() + " (" + closure.numberOfClosedCategories
+				+ " closed)");
+	}
+
+	private final List<Combinator> combinators;
+	// Categories indexed by dense index. Rules are only recorded between the first numberOfClosedCategories of them.
+	// The rest are results of rules that exceed the maximum arity, so they aren't combined further.
+	private final List<Category> categories;
+	private final int numberOfClosedCategories;
+	// Category ID to dense index, or -1 for categories outside the closure.
+	private final int[] idToIndex;
+	// Rules for each left category, indexed by the right category's dense index. Missing entries have no rules.
+	private final List<IntObjectHashMap<List<RuleProduction>>> leftToRightToRules;
+
+	private GrammarClosure(final List<Combinator> combinators, final List<Category> categories,
+			final int numberOfClosedCategories) {
+		this.combinators = combinators;
+		this.categories = categories;
+		this.numberOfClosedCategories = numberOfClosedCategories;
+		this.leftToRightToRules = new ArrayList<>(numberOfClosedCategories);
+		for (int i = 0; i < numberOfClosedCategories; i++) {
+			leftToRightToRules.add(new IntObjectHashMap<>());
+		}
+
+		int maxID = 0;
+		for (final Category category : categories) {
+			maxID = Math.max(maxID, category.getID());
+		}
+		this.idToIndex = new int[maxID + 1];
+		Arrays.fill(idToIndex, -1);
+		for (int i = 0; i < categories.size(); i++) {
+			idToIndex[categories.get(i).getID()] = i;
+		}
+	}
+
+	/**
+	 * Computes the categories reachable from the lexical categories. Categories with more than maxArity arguments are
+	 * recorded as results, but not combined further.
+	 */
+	public static GrammarClosure compute(final Collection<Category> lexicalCategories,
+			final Multimap<Category, Category> unaryRules, final List<Combinator> combinators, final int maxArity) {
+		final List<Category> closed = new ArrayList<>();
+		final Map<Category, Integer> closedIndex = new HashMap<>();
+		final List<Category> open = new ArrayList<>();
+		final Map<Category, Integer> openIndex = new HashMap<>();
+		final List<int[]> pairs = new ArrayList<>();
+		final List<List<RuleProduction>> pairRules = new ArrayList<>();
+
+		final List<Category> agenda = new ArrayList<>(lexicalCategories);
+		for (int next = 0; next < agenda.size() && closed.size() < MAX_CATEGORIES; next++) {
+			final Category category = agenda.get(next);
+			if (closedIndex.containsKey(category)) {
+				continue;
+			}
+
+			final int index = closed.size();
+			closed.add(category);
+			closedIndex.put(category, index);
+			agenda.addAll(unaryRules.get(category));
+
+			// Combine with everything seen so far, including itself.
+			for (int other = 0; other <= index; other++) {
+				addRules(category, closed.get(other), index, other, combinators, maxArity, agenda, open, openIndex,
+						pairs, pairRules);
+				if (other != index) {
+					addRules(closed.get(other), category, other, index, combinators, maxArity, agenda, open,
+							openIndex, pairs, pairRules);
+				}
+			}
+		}
+
+		// Categories that were only seen as results go after the closed categories.
+		final List<Category> categories = new ArrayList<>(closed);
+		for (final Category category : open) {
+			if (!closedIndex.containsKey(category)) {
+				categories.add(category);
+			}
+		}
+
+		final GrammarClosure result = new GrammarClosure(combinators, categories, closed.size());
+		for (int i = 0; i < pairs.size(); i++) {
+			result.leftToRightToRules.get(pairs.get(i)[0]).put(pairs.get(i)[1], pairRules.get(i));
+		}
+		return result;
+	}
+
+	private static void addRules(final Category left, final Category right, final int leftIndex,
+			final int rightIndex, final List<Combinator> combinators, final int maxArity, final List<Category> agenda,
+			final List<Category> open, final Map<Category, Integer> openIndex, final List<int[]> pairs,
+			final List<List<RuleProduction>> pairRules) {
+		final List<RuleProduction> rules = Combinator.getRules(left, right, combinators);
+		if (rules.isEmpty()) {
+			return;
+		}
+
+		pairs.add(new int[] { leftIndex, rightIndex });
+		pairRules.add(rules);
+		for (final RuleProduction rule : rules) {
+			final Category result = rule.getCategory();
+			if (!openIndex.containsKey(result)) {
+				openIndex.put(result, open.size());
+				open.add(result);
+				if (result.getNumberOfArguments() <= maxArity) {
+					agenda.add(result);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the rules that apply to a pair of categories, or null if either category is outside the closure.
+	 */
+	public List<RuleProduction> getRules(final Category left, final Category right) {
+		final int leftIndex = getIndex(left);
+		final int rightIndex = getIndex(right);
+		if (leftIndex == -1 || rightIndex == -1 || leftIndex >= numberOfClosedCategories
+				|| rightIndex >= numberOfClosedCategories) {
+			return null;
+		}
+
+		final List<RuleProduction> result = leftToRightToRules.get(leftIndex).get(rightIndex);
+		return result == null ? Collections.emptyList() : result;
+	}
+
+	private int getIndex(final Category category) {
+		return category.getID() < idToIndex.length ? idToIndex[category.getID()] : -1;
+	}
+
+	/**
+	 * File format:
+	 *
+	 * <pre>
+	 * COMBINATORS n
+	 * rule_type (one line per combinator)
+	 * CATEGORIES n closed
+	 * category (one line per category)
+	 * RULES n
+	 * left right combinator result head_is_left (one line per rule, using dense indices)
+	 * </pre>
+	 */
+	public void save(final File file) throws IOException {
+		try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+			out.println("COMBINATORS " + combinators.size());
+			for (final Combinator combinator : combinators) {
+				out.println(combinator.getRuleType());
+			}
+
+			out.println("CATEGORIES " + categories.size() + " " + numberOfClosedCategories);
+			for (final Category category : categories) {
+				out.println(category);
+			}
+
+			int numberOfRules = 0;
+			for (final IntObjectHashMap<List<RuleProduction>> rightToRules : leftToRightToRules) {
+				for (final ObjectCursor<List<RuleProduction>> rules : rightToRules.values()) {
+					numberOfRules += rules.value.size();
+				}
+			}
+
+			out.println("RULES " + numberOfRules);
+			for (int left = 0; left < numberOfClosedCategories; left++) {
+				for (final IntObjectCursor<List<RuleProduction>> entry : leftToRightToRules.get(left)) {
+					for (final RuleProduction rule : entry.value) {
+						out.println(left + " " + entry.key + " " + combinators.indexOf(rule.getCombinator()) + " "
+								+ idToIndex[rule.getCategory().getID()] + " " + (rule.isHeadIsLeft() ? 1 : 0));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Loads a closure computed for the given combinators, or returns null if the file was made with different ones.
+	 */
+	public static GrammarClosure load(final File file, final List<Combinator> combinators) throws IOException {
+		final Iterator<String> lines = Util.readFileLineByLine(file);
+		final int numberOfCombinators = Integer.valueOf(lines.next().split(" ")[1]);
+		if (numberOfCombinators != combinators.size()) {
+			return null;
+		}
+		for (final Combinator combinator : combinators) {
+			if (!lines.next().equals(combinator.getRuleType().toString())) {
+				return null;
+			}
+		}
+
+		final String[] header = lines.next().split(" ");
+		final int numberOfCategories = Integer.valueOf(header[1]);
+		final List<Category> categories = new ArrayList<>(numberOfCategories);
+		for (int i = 0; i < numberOfCategories; i++) {
+			categories.add(Category.valueOf(lines.next()));
+		}
+
+		final GrammarClosure result = new GrammarClosure(combinators, categories, Integer.valueOf(header[2]));
+		final int numberOfRules = Integer.valueOf(lines.next().split(" ")[1]);
+		for (int i = 0; i < numberOfRules; i++) {
+			final String[] fields = lines.next().split(" ");
+			final int left = Integer.valueOf(fields[0]);
+			final int right = Integer.valueOf(fields[1]);
+			final IntObjectHashMap<List<RuleProduction>> rightToRules = result.leftToRightToRules.get(left);
+			List<RuleProduction> rules = rightToRules.get(right);
+			if (rules == null) {
+				rules = new ArrayList<>(2);
+				rightToRules.put(right, rules);
+			}
+			rules.add(Combinator.makeProduction(combinators.get(Integer.valueOf(fields[2])),
+					categories.get(Integer.valueOf(fields[3])), fields[4].equals("1")));
+		}
+
+		return result;
+	}
+}
@@ -439,6 +439,40 @@ public abstract class SyntaxTreeNode implements Serializable {
 		return leaves;
 	}
 
+	// Hash of the dependencies in this subtree, stored with a flag in the upper bits once it's been computed.
+	private transient long dependencyHash = 0;
+	private final static long DEPENDENCY_HASH_COMPUTED = 1L << 32;
+
+	/**
+	 * Returns a hash of all the resolved unlabelled dependencies in this subtree, so that parses with the same
+	 * dependencies get the same hash, regardless of how they were derived. Used for dependency hashing in N-best
+	 * parsing.
+	 */
+	public int getDependencyHash() {
+		if (dependencyHash == 0) {
+			int result = 0;
+
+			// Add in a hash for each dependency at this node.
+			if (resolvedUnlabelledDependencies != null) {
+				for (final UnlabelledDependency dep : resolvedUnlabelledDependencies) {
+					for (final int arg : dep.getArguments()) {
+						if (dep.getHead() != arg) {
+							result = result ^ dep.getAttachmentHash(arg);
+						}
+					}
+				}
+			}
+
+			for (final SyntaxTreeNode child : getChildren()) {
+				result = result ^ child.getDependencyHash();
+			}
+
+			dependencyHash = DEPENDENCY_HASH_COMPUTED | (result & 0xFFFFFFFFL);
+		}
+
+		return (int) dependencyHash;
+	}
+
 	public int getStartIndex() {
 		return getLeaves().get(0).getSentencePosition();
 	}
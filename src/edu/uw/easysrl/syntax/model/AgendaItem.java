@@ -1,9 +1,9 @@
 package edu.uw.easysrl.syntax.model;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 
 import edu.uw.easysrl.dependencies.DependencyStructure;
 import edu.uw.easysrl.dependencies.UnlabelledDependency;
@@ -31,7 +31,6 @@ public class AgendaItem implements Comparable<AgendaItem> {
 		this.startOfSpan = startIndex;
 		this.spanLength = length;
 		this.includeDeps = includeDeps;
-		this.key = getEquivalenceClassKey2();
 	}
 
 	/**
@@ -68,9 +67,13 @@ public class AgendaItem implements Comparable<AgendaItem> {
 		return spanLength;
 	}
 
-	private final Object key;
+	// Computed on demand, as most items are never popped from the agenda.
+	private Object key;
 
 	public Object getEquivalenceClassKey() {
+		if (key == null) {
+			key = getEquivalenceClassKey2();
+		}
 		return key;
 	}
 
@@ -89,11 +92,16 @@ public class AgendaItem implements Comparable<AgendaItem> {
 				: parse.getCategory();
 	}
 
+	/**
+	 * Key for items with dependencies. Keys are compared by a 64-bit fingerprint first, so the dependencies only need
+	 * to be compared when the fingerprints match.
+	 */
 	private static class KeyWithDeps {
 		private final Category category;
 		private final RuleClass rule;
 		private final DependencyStructure deps;
-		private final Set<UnlabelledDependency> unlabelledDependencies;
+		private final List<UnlabelledDependency> unlabelledDependencies;
+		private final long fingerprint;
 
 		public KeyWithDeps(final Category category, final RuleClass ruleClass, final DependencyStructure deps,
 				final List<UnlabelledDependency> unlabelledDependencies) {
@@ -101,24 +109,55 @@ public class AgendaItem implements Comparable<AgendaItem> {
 			this.category = category.withoutAnnotation();
 			this.rule = ruleClass;
 			this.deps = deps;
-			// Turning into a set to lose ordering.
-			this.unlabelledDependencies = new HashSet<>(unlabelledDependencies);
+			this.unlabelledDependencies = unlabelledDependencies;
+
+			long hash = getFingerprint(unlabelledDependencies);
+			hash = 31 * hash + (deps == null ? 0 : deps.getFingerprint());
+			hash = 31 * hash + this.category.getID();
+			hash = 31 * hash + (ruleClass == null ? -1 : ruleClass.ordinal());
+			this.fingerprint = hash;
+		}
+
+		/**
+		 * Order-independent hash of the set of dependencies, ignoring duplicates.
+		 */
+		private static long getFingerprint(final List<UnlabelledDependency> dependencies) {
+			if (dependencies.size() < 2) {
+				return dependencies.isEmpty() ? 0 : dependencies.get(0).getFingerprint();
+			}
+
+			final long[] fingerprints = new long[dependencies.size()];
+			for (int i = 0; i < fingerprints.length; i++) {
+				fingerprints[i] = dependencies.get(i).getFingerprint();
+			}
+			Arrays.sort(fingerprints);
+
+			long result = fingerprints[0];
+			for (int i = 1; i < fingerprints.length; i++) {
+				if (fingerprints[i] != fingerprints[i - 1]) {
+					result += fingerprints[i];
+				}
+			}
+			return result;
 		}
 
 		@Override
 		public int hashCode() {
-			return Objects.hash(category, deps, rule, unlabelledDependencies);
-
+			return (int) (fingerprint ^ (fingerprint >>> 32));
 		}
 
 		@Override
 		public boolean equals(final Object obj) {
 			final AgendaItem.KeyWithDeps other = (AgendaItem.KeyWithDeps) obj;
-			return Objects.equals(category, other.category) && Objects.equals(deps, other.deps)
-					&& Objects.equals(rule, other.rule)
-					&& Objects.equals(unlabelledDependencies, other.unlabelledDependencies);
+			return fingerprint == other.fingerprint && category == other.category && rule == other.rule
+					&& Objects.equals(deps, other.deps)
+					&& sameSet(unlabelledDependencies, other.unlabelledDependencies);
+		}
 
+		private static boolean sameSet(final List<UnlabelledDependency> deps1, final List<UnlabelledDependency> deps2) {
+			// Comparing as sets to ignore ordering.
+			return deps1.equals(deps2) || new HashSet<>(deps1).equals(new HashSet<>(deps2));
 		}
 
 	}
-}
\ No newline at end of file
+}
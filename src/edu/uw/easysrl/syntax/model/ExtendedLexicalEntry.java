@@ -9,7 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import com.carrotsearch.hppc.ObjectDoubleHashMap;
+import com.carrotsearch.hppc.LongObjectHashMap;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
@@ -19,9 +19,9 @@ import edu.uw.easysrl.dependencies.UnlabelledDependency;
 import edu.uw.easysrl.main.InputReader.InputWord;
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.grammar.Preposition;
-import edu.uw.easysrl.syntax.model.feature.Feature.FeatureKey;
 import edu.uw.easysrl.syntax.model.feature.FeatureCache;
 import edu.uw.easysrl.syntax.model.feature.FeatureSet;
+import edu.uw.easysrl.syntax.model.feature.FeatureWeights;
 import edu.uw.easysrl.syntax.model.feature.PrepositionFeature;
 import edu.uw.easysrl.util.Util.Scored;
 
@@ -34,20 +34,23 @@ class ExtendedLexicalEntry {
 	private final List<InputWord> sentence;
 	private final Forest forest;
 	private final FeatureSet featureSet;
-	private final ObjectDoubleHashMap<FeatureKey> featureToScore;
+	private final FeatureWeights featureWeights;
 
 	private final double[] viterbiScoreConjunctiveCache;
 	private final double[] featureScoreCache;
 	private final FeatureCache featureCache;
+	// Best labels for this word's dependencies, which are relabelled in every derivation that resolves them. Created
+	// lazily, as most words never head a dependency.
+	private LongObjectHashMap<Scored<SRLLabel>> dependencyToBestLabel;
 
 	ExtendedLexicalEntry(final FeatureSet featureSet, final int wordIndex, final List<InputWord> words,
-			final Forest forest, final ObjectDoubleHashMap<FeatureKey> featureToScore, final FeatureCache featureCache) {
+			final Forest forest, final FeatureWeights featureWeights, final FeatureCache featureCache) {
 		this.wordIndex = wordIndex;
 		this.sentence = words;
 
 		this.forest = forest;
 		this.featureSet = featureSet;
-		this.featureToScore = featureToScore;
+		this.featureWeights = featureWeights;
 		this.viterbiScoreConjunctiveCache = new double[forest.numberOfConjunctiveNodes];
 		this.featureScoreCache = new double[forest.numberOfConjunctiveNodes];
 		this.featureCache = featureCache;
@@ -98,7 +101,7 @@ class ExtendedLexicalEntry {
 	private double logScoreOfFeaturesAtNode(final ConjunctiveNode node) {
 		double result = featureScoreCache[node.id];
 		if (result == 0.0) {
-			result = node.getLogScore(sentence, wordIndex, featureSet, featureToScore, featureCache);
+			result = node.getLogScore(sentence, wordIndex, featureSet, featureWeights, featureCache);
 			featureScoreCache[node.id] = result;
 		}
 
@@ -127,7 +130,16 @@ class ExtendedLexicalEntry {
 
 	}
 
+	/**
+	 * The unlexicalized structure of an extended lexical entry. Forests don't hold any sentence-specific scores, so one
+	 * forest can be shared by every ExtendedLexicalEntry for the same word and categories.
+	 */
 	static class Forest {
+		// Rough sizes used to estimate the memory used by a forest: a node with its list of children, and arrays.
+		private final static int BYTES_PER_NODE = 96;
+		private final static int ARRAY_HEADER_BYTES = 16;
+		private final static int REFERENCE_BYTES = 8;
+
 		private final DisjunctiveNode root;
 		private final Collection<ConjunctiveCategoryNode> categoryNodes;
 		private final int maxDependencyLength;
@@ -138,6 +150,7 @@ class ExtendedLexicalEntry {
 		private final ConjunctiveDependencyNode[][] offsetToSRLtoNode;
 
 		private final int minOffset;
+		private final long estimatedBytes;
 
 		private Forest(final int maxDependencyLength, final DisjunctiveNode root,
 				final Collection<ConjunctiveCategoryNode> categoryNodes,
@@ -177,12 +190,32 @@ class ExtendedLexicalEntry {
 
 			}
 
+			// The lookup arrays are sized by category ID and dependency offset, so they can be much larger than the
+			// nodes themselves.
+			this.estimatedBytes = (long) numberOfConjunctiveNodes * BYTES_PER_NODE + arrayBytes(categoryToNode.length)
+					+ arrayBytes(offsetToSRLtoNode.length) + (long) offsetToSRLtoNode.length
+					* arrayBytes(SRLLabel.numberOfLabels() + 1);
+		}
+
+		private static long arrayBytes(final int length) {
+			return ARRAY_HEADER_BYTES + (long) length * REFERENCE_BYTES;
+		}
+
+		/**
+		 * An estimate of the memory used by the forest, in bytes.
+		 */
+		long getEstimatedBytes() {
+			return estimatedBytes;
 		}
 
 		private Collection<ConjunctiveCategoryNode> getCategoryNodes() {
 			return categoryNodes;
 		}
 
+		int getNumberOfConjunctiveNodes() {
+			return numberOfConjunctiveNodes;
+		}
+
 		private DisjunctiveNode getNode(final Category category, final int argNumber) {
 			final ConjunctiveCategoryNode node = getNode(category);
 			if (argNumber > node.argNumberToChild.length) {
@@ -404,7 +437,7 @@ class ExtendedLexicalEntry {
 		}
 
 		abstract double getLogScore(List<InputWord> words, int wordIndex, FeatureSet featureSet,
-				ObjectDoubleHashMap<FeatureKey> featureToScore, FeatureCache featureCache);
+				FeatureWeights featureWeights, FeatureCache featureCache);
 
 		private final List<DisjunctiveNode> children;
 		private final int id;
@@ -437,7 +470,7 @@ class ExtendedLexicalEntry {
 
 		@Override
 		double getLogScore(final List<InputWord> words, final int wordIndex, final FeatureSet featureSet,
-				final ObjectDoubleHashMap<FeatureKey> featureToScore, final FeatureCache featureCache) {
+				final FeatureWeights featureWeights, final FeatureCache featureCache) {
 
 			return featureCache.getScore(wordIndex, category);
 
@@ -464,7 +497,7 @@ class ExtendedLexicalEntry {
 
 		@Override
 		double getLogScore(final List<InputWord> words, final int functorIndex, final FeatureSet featureSet,
-				final ObjectDoubleHashMap<FeatureKey> featureToScore, final FeatureCache featureCache) {
+				final FeatureWeights featureWeights, final FeatureCache featureCache) {
 
 			if (offset == 0) {
 				// null attachment
@@ -497,7 +530,7 @@ class ExtendedLexicalEntry {
 
 		@Override
 		double getLogScore(final List<InputWord> words, final int wordIndex, final FeatureSet featureSet,
-				final ObjectDoubleHashMap<FeatureKey> featureToScore, final FeatureCache featureCache) {
+				final FeatureWeights featureWeights, final FeatureCache featureCache) {
 
 			return featureCache.getScore(words, wordIndex, category, preposition, argumentNumber, label);
 		}
@@ -523,7 +556,7 @@ class ExtendedLexicalEntry {
 
 		@Override
 		double getLogScore(final List<InputWord> words, final int wordIndex, final FeatureSet featureSet,
-				final ObjectDoubleHashMap<FeatureKey> featureToScore, final FeatureCache featureCache) {
+				final FeatureWeights featureWeights, final FeatureCache featureCache) {
 			if (preposition == Preposition.NONE) {
 				return 0.0;
 			}
@@ -531,7 +564,7 @@ class ExtendedLexicalEntry {
 			double scoreOfFeaturesAtNode = 0;
 			for (final PrepositionFeature feature : featureSet.prepositionFeatures) {
 				scoreOfFeaturesAtNode += feature.getFeatureScore(words, wordIndex, preposition, category,
-						argumentNumber, featureToScore);
+						argumentNumber, featureWeights);
 			}
 
 			return scoreOfFeaturesAtNode;
@@ -589,9 +622,31 @@ class ExtendedLexicalEntry {
 	}
 
 	/**
-	 * Finds the best label for a dependency.
+	 * Finds the best label for a dependency. The label only depends on the category, slot, preposition and argument,
+	 * so the result is cached for the sentence.
 	 */
 	Scored<SRLLabel> getBestLabels(final UnlabelledDependency dep) {
+		if (dep.getArgNumber() >= MAX_ARGUMENTS) {
+			return computeBestLabels(dep);
+		} else if (dependencyToBestLabel == null) {
+			dependencyToBestLabel = new LongObjectHashMap<>();
+		}
+
+		final long slot = ((long) dep.getCategory().getID() * MAX_ARGUMENTS + dep.getArgNumber())
+				* Preposition.numberOfPrepositions() + dep.getPreposition().getID();
+		final long key = (slot << 32) | (dep.getOffset() & 0xFFFFFFFFL);
+		Scored<SRLLabel> result = dependencyToBestLabel.get(key);
+		if (result == null) {
+			result = computeBestLabels(dep);
+			dependencyToBestLabel.put(key, result);
+		}
+
+		return result;
+	}
+
+	private final static int MAX_ARGUMENTS = 16;
+
+	private Scored<SRLLabel> computeBestLabels(final UnlabelledDependency dep) {
 
 		final DisjunctiveNode roleChoice = forest.getNode(dep.getCategory(), dep.getArgNumber(), dep.getPreposition());
 
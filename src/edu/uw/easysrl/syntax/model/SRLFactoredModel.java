@@ -1,11 +1,16 @@
 package edu.uw.easysrl.syntax.model;
 
-import com.carrotsearch.hppc.ObjectDoubleHashMap;
-
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import edu.uw.easysrl.dependencies.SRLFrame.SRLLabel;
 import edu.uw.easysrl.dependencies.UnlabelledDependency;
@@ -24,8 +29,10 @@ import edu.uw.easysrl.syntax.model.feature.Feature.UnaryRuleFeature;
 import edu.uw.easysrl.syntax.model.feature.FeatureCache;
 import edu.uw.easysrl.syntax.model.feature.FeatureCache.SlotFeatureCache;
 import edu.uw.easysrl.syntax.model.feature.FeatureSet;
+import edu.uw.easysrl.syntax.model.feature.FeatureWeights;
 import edu.uw.easysrl.syntax.parser.AbstractParser.UnaryRule;
 import edu.uw.easysrl.syntax.parser.Agenda;
+import edu.uw.easysrl.util.CopyOnWriteTable;
 import edu.uw.easysrl.util.Util.Scored;
 
 public class SRLFactoredModel extends Model {
@@ -33,15 +40,15 @@ public class SRLFactoredModel extends Model {
 	private final Collection<UnaryRuleFeature> unaryRuleFeatures;
 
 	private SRLFactoredModel(final List<ExtendedLexicalEntry> forests,
-			final Collection<UnaryRuleFeature> unaryRuleFeatures, final ObjectDoubleHashMap<FeatureKey> featureToScore,
-			final Collection<BinaryFeature> binaryFeatures, final Collection<RootCategoryFeature> rootFeatures,
+			final Collection<UnaryRuleFeature> unaryRuleFeatures, final FeatureWeights featureWeights,
+			final BinaryFeatureScores binaryFeatureScores, final Collection<RootCategoryFeature> rootFeatures,
 			final List<InputWord> sentence) {
 		super(forests.size());
 		this.forests = forests;
 		this.unaryRuleFeatures = unaryRuleFeatures;
 
-		this.featureToScore = featureToScore;
-		this.binaryFeatures = binaryFeatures;
+		this.featureWeights = featureWeights;
+		this.binaryFeatureScores = binaryFeatureScores;
 		this.rootFeatures = rootFeatures;
 		this.sentence = sentence;
 
@@ -89,28 +96,22 @@ public class SRLFactoredModel extends Model {
 
 	private final double globalUpperBound;
 	private final List<Double> upperBoundsForWord;
-	private final ObjectDoubleHashMap<FeatureKey> featureToScore;
-	private final Collection<BinaryFeature> binaryFeatures;
+	private final FeatureWeights featureWeights;
+	private final BinaryFeatureScores binaryFeatureScores;
 	private final Collection<RootCategoryFeature> rootFeatures;
 	private final List<InputWord> sentence;
 
 	@Override
 	public AgendaItem combineNodes(final AgendaItem leftChild, final AgendaItem rightChild, final SyntaxTreeNode node) {
 
-		double binaryRuleScore = 0.0;
-		for (final BinaryFeature feature : binaryFeatures) {
-			binaryRuleScore += feature.getFeatureScore(node.getCategory(), node.getRuleType(), leftChild.getParse()
-					.getCategory(), leftChild.getParse().getRuleType().getNormalFormClassForRule(), leftChild
-					.getSpanLength(), rightChild.getParse().getCategory(), rightChild.getParse().getRuleType()
-					.getNormalFormClassForRule(), rightChild.getSpanLength(), null, featureToScore);
-		}
+		final double binaryRuleScore = binaryFeatureScores.getScore(leftChild, rightChild, node);
 
 		final int length = leftChild.spanLength + rightChild.spanLength;
 
 		double rootScore = 0.0;
 		if (length == forests.size()) {
 			for (final RootCategoryFeature feature : rootFeatures) {
-				rootScore += feature.getFeatureScore(sentence, node.getCategory(), featureToScore);
+				rootScore += feature.getFeatureScore(sentence, node.getCategory(), featureWeights);
 			}
 		}
 
@@ -163,7 +164,7 @@ public class SRLFactoredModel extends Model {
 		double insideScore = child.getInsideScore();
 		for (final UnaryRuleFeature feature : unaryRuleFeatures) {
 			insideScore += feature.getFeatureScore(rule.getID(), sentence, child.startOfSpan, child.startOfSpan
-					+ child.spanLength, featureToScore);
+					+ child.spanLength, featureWeights);
 		}
 
 		AgendaItem agendaItem = new AgendaItem(result, insideScore, child.outsideScoreUpperbound, child.startOfSpan,
@@ -174,6 +175,83 @@ public class SRLFactoredModel extends Model {
 		return agendaItem;
 	}
 
+	/**
+	 * Scores binary rules. The features that only depend on the child categories are summed into a dense table indexed
+	 * by category IDs, which is shared between sentences. The table is filled in for pairs of lexical categories when
+	 * the model loads, and for other pairs when they are first seen.
+	 *
+	 * Concurrent writers can only race to store the same value. Categories with IDs of MAX_CACHED_CATEGORY_ID or more
+	 * are scored without the table, to bound its size.
+	 */
+	static class BinaryFeatureScores {
+		private final static int MAX_CACHED_CATEGORY_ID = 2048;
+
+		private final FeatureWeights featureWeights;
+		private final List<BinaryFeature> childCategoryFeatures = new ArrayList<>();
+		private final List<BinaryFeature> otherFeatures = new ArrayList<>();
+		// Rows are indexed by the left category ID, and columns by the right. Entries hold the bits of the score, and
+		// NaN means not computed yet.
+		private final CopyOnWriteTable<AtomicLongArray> leftToRightToScore = CopyOnWriteTable.ofLongs(
+				MAX_CACHED_CATEGORY_ID, Double.doubleToRawLongBits(Double.NaN));
+
+		BinaryFeatureScores(final Collection<BinaryFeature> features, final FeatureWeights featureWeights,
+				final Collection<Category> lexicalCategories) {
+			this.featureWeights = featureWeights;
+			for (final BinaryFeature feature : features) {
+				if (feature.isOnlyDependentOnChildCategories()) {
+					childCategoryFeatures.add(feature);
+				} else {
+					otherFeatures.add(feature);
+				}
+			}
+
+			if (!childCategoryFeatures.isEmpty()) {
+				for (final Category left : lexicalCategories) {
+					for (final Category right : lexicalCategories) {
+						getChildCategoriesScore(left, right);
+					}
+				}
+			}
+		}
+
+		double getScore(final AgendaItem leftChild, final AgendaItem rightChild, final SyntaxTreeNode node) {
+			final SyntaxTreeNode left = leftChild.getParse();
+			final SyntaxTreeNode right = rightChild.getParse();
+			double result = childCategoryFeatures.isEmpty() ? 0.0 : getChildCategoriesScore(left.getCategory(),
+					right.getCategory());
+			for (final BinaryFeature feature : otherFeatures) {
+				result += feature.getFeatureScore(node.getCategory(), node.getRuleType(), left.getCategory(), left
+						.getRuleType().getNormalFormClassForRule(), leftChild.getSpanLength(), right.getCategory(),
+						right.getRuleType().getNormalFormClassForRule(), rightChild.getSpanLength(), null,
+						featureWeights);
+			}
+
+			return result;
+		}
+
+		private double getChildCategoriesScore(final Category left, final Category right) {
+			final int leftID = left.getID();
+			final int rightID = right.getID();
+			final AtomicLongArray row = leftToRightToScore.getRowIfPresent(leftID, rightID);
+			if (row != null) {
+				final double result = Double.longBitsToDouble(row.get(rightID));
+				if (!Double.isNaN(result)) {
+					return result;
+				}
+			}
+
+			double result = 0.0;
+			for (final BinaryFeature feature : childCategoryFeatures) {
+				result += feature.getFeatureScore(null, null, left, null, 0, right, null, 0, null, featureWeights);
+			}
+
+			if (leftToRightToScore.isStored(leftID, rightID)) {
+				leftToRightToScore.getRow(leftID, rightID).set(rightID, Double.doubleToRawLongBits(result));
+			}
+			return result;
+		}
+	}
+
 	// Worst class name EVER.
 	public static class SRLFactoredModelFactory extends ModelFactory {
 		private final CutoffsDictionaryInterface cutoffsDictionary;
@@ -183,53 +261,123 @@ public class SRLFactoredModel extends Model {
 		private final boolean usingSlotFeatures;
 		private final SlotFeatureCache slotFeatureCache;
 		private final double supertaggingFeatureScore;
-		private final ObjectDoubleHashMap<FeatureKey> featureToScore;
+		private final FeatureWeights featureWeights;
+		private final BinaryFeatureScores binaryFeatureScores;
+
+		/**
+		 * Forests for previously seen words, bounded by their estimated size in bytes.
+		 */
+		private final Cache<ForestKey, Forest> forestCache;
+		public final static long DEFAULT_MAX_CACHED_FOREST_BYTES = 256L << 20;
+		private final static int MAX_DEPENDENCY_LENGTH = 50;
 
 		public SRLFactoredModelFactory(final double[] weights, final FeatureSet featureSet,
 				final Collection<Category> lexicalCategories, final CutoffsDictionaryInterface cutoffs,
 				final Map<FeatureKey, Integer> featureToIndex) {
+			this(weights, featureSet, lexicalCategories, cutoffs, featureToIndex, DEFAULT_MAX_CACHED_FOREST_BYTES);
+		}
+
+		/**
+		 * @param maxCachedForestBytes
+		 *            Approximate bound on the memory used to cache forests between sentences. Use 0 to disable the
+		 *            cache.
+		 */
+		public SRLFactoredModelFactory(final double[] weights, final FeatureSet featureSet,
+				final Collection<Category> lexicalCategories, final CutoffsDictionaryInterface cutoffs,
+				final Map<FeatureKey, Integer> featureToIndex, final long maxCachedForestBytes) {
+			this.forestCache = CacheBuilder.newBuilder().maximumWeight(maxCachedForestBytes)
+					.weigher((final ForestKey key, final Forest forest) -> (int) Math.min(Integer.MAX_VALUE, key
+							.getEstimatedBytes() + forest.getEstimatedBytes())).build();
 			this.featureSet = featureSet;
 			this.cutoffsDictionary = cutoffs;
 			this.lexicalCategories = lexicalCategories;
 			this.usingDependencyFeatures = !featureSet.dependencyFeatures.isEmpty();
 			this.usingSlotFeatures = !featureSet.argumentSlotFeatures.isEmpty();
 
-			featureToScore = new ObjectDoubleHashMap<>(featureToIndex.size(), 0.1);
-
-			for (final java.util.Map.Entry<FeatureKey, Integer> entry : featureToIndex.entrySet()) {
-				featureToScore.put(entry.getKey(), weights[entry.getValue()]);
-			}
+			featureWeights = new FeatureWeights(featureToIndex, weights);
 
 			final FeatureKey supertaggingFeatureKey = featureSet.lexicalCategoryFeatures.getDefault();
 			supertaggingFeatureScore = weights[featureToIndex.get(supertaggingFeatureKey)];
-			featureToScore.put(supertaggingFeatureKey, supertaggingFeatureScore);
+			featureWeights.put(supertaggingFeatureKey, supertaggingFeatureScore);
 
-			this.slotFeatureCache = new SlotFeatureCache(featureSet, featureToScore);
+			this.slotFeatureCache = new SlotFeatureCache(featureSet, featureWeights);
+			this.binaryFeatureScores = new BinaryFeatureScores(featureSet.binaryFeatures, featureWeights,
+					lexicalCategories);
 
 		}
 
 		@Override
 		public Model make(final InputToParser input) {
 			final List<InputWord> sentence = input.getInputWords();
-			final FeatureCache featureCache = new FeatureCache(sentence, featureToScore, featureSet,
+			final FeatureCache featureCache = new FeatureCache(sentence, featureWeights, featureSet,
 					supertaggingFeatureScore, slotFeatureCache);
 
 			final List<ExtendedLexicalEntry> forests = new ArrayList<>(sentence.size());
 			int wordIndex = 0;
 			for (final InputWord word : sentence) {
 
-				final Forest forest = ExtendedLexicalEntry.makeUnlexicalizedForest(word.word,
-						featureCache.getCategoriesAtIndex(wordIndex), 50, cutoffsDictionary, usingSlotFeatures,
-						usingDependencyFeatures);
+				final Forest forest = getForest(word.word, featureCache.getCategoriesAtIndex(wordIndex));
 
-				forests.add(new ExtendedLexicalEntry(featureSet, wordIndex, sentence, forest, featureToScore,
+				forests.add(new ExtendedLexicalEntry(featureSet, wordIndex, sentence, forest, featureWeights,
 						featureCache));
 
 				wordIndex++;
 			}
 
-			return new SRLFactoredModel(forests, featureSet.unaryRuleFeatures, featureToScore,
-					featureSet.binaryFeatures, featureSet.rootFeatures, sentence);
+			return new SRLFactoredModel(forests, featureSet.unaryRuleFeatures, featureWeights, binaryFeatureScores,
+					featureSet.rootFeatures, sentence);
+		}
+
+		/**
+		 * The forest only depends on the word and its categories (the cutoffs and feature flags are fixed for the
+		 * factory), so forests are built once and shared between sentences.
+		 */
+		private Forest getForest(final String word, final Collection<Category> categories) {
+			try {
+				return forestCache.get(new ForestKey(word, categories),
+						() -> ExtendedLexicalEntry.makeUnlexicalizedForest(word, categories, MAX_DEPENDENCY_LENGTH,
+								cutoffsDictionary, usingSlotFeatures, usingDependencyFeatures));
+			} catch (final ExecutionException e) {
+				throw Throwables.propagate(e.getCause());
+			}
+		}
+
+		private static class ForestKey {
+			private final String word;
+			private final int[] categoryIDs;
+			private final int hashCode;
+
+			private ForestKey(final String word, final Collection<Category> categories) {
+				this.word = word;
+				this.categoryIDs = new int[categories.size()];
+				int i = 0;
+				for (final Category category : categories) {
+					categoryIDs[i] = category.getID();
+					i++;
+				}
+				Arrays.sort(categoryIDs);
+				this.hashCode = 31 * word.hashCode() + Arrays.hashCode(categoryIDs);
+			}
+
+			private long getEstimatedBytes() {
+				// The key, the word and the array of category IDs.
+				return 32 + 40 + 2L * word.length() + 16 + 4L * categoryIDs.length;
+			}
+
+			@Override
+			public int hashCode() {
+				return hashCode;
+			}
+
+			@Override
+			public boolean equals(final Object obj) {
+				if (!(obj instanceof ForestKey)) {
+					return false;
+				}
+				final ForestKey other = (ForestKey) obj;
+				return hashCode == other.hashCode && word.equals(other.word)
+						&& Arrays.equals(categoryIDs, other.categoryIDs);
+			}
 		}
 
 		@Override
@@ -5,8 +5,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
-import com.carrotsearch.hppc.ObjectDoubleHashMap;
-
 import edu.uw.easysrl.dependencies.SRLFrame.SRLLabel;
 import edu.uw.easysrl.lemmatizer.MorphaStemmer;
 import edu.uw.easysrl.main.InputReader.InputWord;
@@ -22,7 +20,6 @@ public abstract class ArgumentSlotFeature extends Feature {
 
 	private final FeatureKey defaultKey;
 	private int defaultIndex = 0;
-	private double defaultScore = Double.MIN_VALUE;
 
 	/**
 	 * fall:to --> ARG3
@@ -39,6 +36,13 @@ public abstract class ArgumentSlotFeature extends Feature {
 
 		}
 
+		@Override
+		public long getFeatureHash(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
+				final Category category, final int argumentNumber, final Preposition preposition) {
+			return hash64(super.id, role.hashCode(), preposition.hashCode(),
+					MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode());
+		}
+
 	};
 
 	/**
@@ -54,6 +58,12 @@ public abstract class ArgumentSlotFeature extends Feature {
 			return hash(super.id, role.hashCode(), category.getArgument(argumentNumber).hashCode());
 		}
 
+		@Override
+		public long getFeatureHash(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
+				final Category category, final int argumentNumber, final Preposition preposition) {
+			return hash64(super.id, role.hashCode(), category.getArgument(argumentNumber).hashCode());
+		}
+
 	};
 
 	/**
@@ -70,6 +80,12 @@ public abstract class ArgumentSlotFeature extends Feature {
 
 		}
 
+		@Override
+		public long getFeatureHash(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
+				final Category category, final int argumentNumber, final Preposition preposition) {
+			return hash64(super.id, role.hashCode(), category.hashCode(), argumentNumber);
+		}
+
 	};
 
 	/**
@@ -86,6 +102,13 @@ public abstract class ArgumentSlotFeature extends Feature {
 					: 7);
 		}
 
+		@Override
+		public long getFeatureHash(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
+				final Category category, final int argumentNumber, final Preposition preposition) {
+			return hash64(super.id, role.isCoreArgument() ? 13 : 7,
+					words.get(predicateIndex).word.indexOf("-") > -1 ? 13 : 7);
+		}
+
 	};
 
 	private static ArgumentSlotFeature keyArgumentSlot = new ArgumentSlotFeature() {
@@ -99,6 +122,13 @@ public abstract class ArgumentSlotFeature extends Feature {
 					makeKey(preposition, argumentNumber, category).hashCode(), role.hashCode());
 		}
 
+		@Override
+		public long getFeatureHash(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
+				final Category category, final int argumentNumber, final Preposition preposition) {
+			return hash64(super.id, MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode(),
+					makeKey(preposition, argumentNumber, category).hashCode(), role.hashCode());
+		}
+
 	};
 
 	/**
@@ -115,6 +145,13 @@ public abstract class ArgumentSlotFeature extends Feature {
 					category.getArgument(argumentNumber).hashCode());
 		}
 
+		@Override
+		public long getFeatureHash(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
+				final Category category, final int argumentNumber, final Preposition preposition) {
+			return hash64(super.id, MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode(), role.hashCode(),
+					category.getArgument(argumentNumber).hashCode());
+		}
+
 	};
 
 	/**
@@ -131,6 +168,13 @@ public abstract class ArgumentSlotFeature extends Feature {
 					category.hashCode(), argumentNumber);
 		}
 
+		@Override
+		public long getFeatureHash(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
+				final Category category, final int argumentNumber, final Preposition preposition) {
+			return hash64(super.id, MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode(), role.hashCode(),
+					category.hashCode(), argumentNumber);
+		}
+
 	};
 
 	ArgumentSlotFeature() {
@@ -150,17 +194,9 @@ public abstract class ArgumentSlotFeature extends Feature {
 
 	double getFeatureScore(final List<InputWord> words, final int wordIndex, final SRLLabel role,
 			final Category category, final int argumentNumber, final Preposition preposition,
-			final ObjectDoubleHashMap<FeatureKey> featureToScore) {
-		final FeatureKey featureKey = getFeatureKey(words, wordIndex, role, category, argumentNumber, preposition);
-		final double result = featureToScore.getOrDefault(featureKey, Double.MIN_VALUE);
-		if (result == Double.MIN_VALUE) {
-			if (defaultScore == Double.MIN_VALUE) {
-				defaultScore = featureToScore.getOrDefault(defaultKey, Double.MIN_VALUE);
-			}
-
-			return defaultScore;
-		}
-		return result;
+			final FeatureWeights featureWeights) {
+		return featureWeights.getWeight(getFeatureHash(words, wordIndex, role, category, argumentNumber, preposition),
+				this);
 	}
 
 	public Integer getFeatureIndex(final List<InputWord> words, final int wordIndex, final SRLLabel role,
@@ -180,6 +216,12 @@ public abstract class ArgumentSlotFeature extends Feature {
 	public abstract FeatureKey getFeatureKey(List<InputWord> words, int wordIndex, SRLLabel role, Category category,
 			int argumentNumber, Preposition preposition);
 
+	/**
+	 * Equivalent to hash64(getFeatureKey(...).getValues())
+	 */
+	public abstract long getFeatureHash(List<InputWord> words, int wordIndex, SRLLabel role, Category category,
+			int argumentNumber, Preposition preposition);
+
 	public boolean isLexicalized() {
 		return true;
 	}
@@ -261,6 +303,12 @@ public abstract class ArgumentSlotFeature extends Feature {
 
 		}
 
+		@Override
+		public long getFeatureHash(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
+				final Category category, final int argumentNumber, final Preposition preposition) {
+			return hash64(super.id, role.hashCode());
+		}
+
 	};
 
 	/**
@@ -276,6 +324,12 @@ public abstract class ArgumentSlotFeature extends Feature {
 			return hash(super.id, role.hashCode(), argumentNumber);
 		}
 
+		@Override
+		public long getFeatureHash(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
+				final Category category, final int argumentNumber, final Preposition preposition) {
+			return hash64(super.id, role.hashCode(), argumentNumber);
+		}
+
 	};
 
 	/**
@@ -291,6 +345,12 @@ public abstract class ArgumentSlotFeature extends Feature {
 			return hash(super.id, role.hashCode(), argumentNumber, category.getNumberOfArguments());
 		}
 
+		@Override
+		public long getFeatureHash(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
+				final Category category, final int argumentNumber, final Preposition preposition) {
+			return hash64(super.id, role.hashCode(), argumentNumber, category.getNumberOfArguments());
+		}
+
 	};
 
 	private static ArgumentSlotFeature lemmaAndRoleFeature = new ArgumentSlotFeature() {
@@ -307,6 +367,12 @@ public abstract class ArgumentSlotFeature extends Feature {
 
 		}
 
+		@Override
+		public long getFeatureHash(final List<InputWord> words, final int wordIndex, final SRLLabel role,
+				final Category category, final int argumentNumber, final Preposition preposition) {
+			return hash64(super.id, MorphaStemmer.stemToken(words.get(wordIndex).word).hashCode(), role.hashCode());
+		}
+
 	};
 
 	/**
@@ -323,6 +389,13 @@ public abstract class ArgumentSlotFeature extends Feature {
 					MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode(), category.getNumberOfArguments());
 		}
 
+		@Override
+		public long getFeatureHash(final List<InputWord> words, final int predicateIndex, final SRLLabel role,
+				final Category category, final int argumentNumber, final Preposition preposition) {
+			return hash64(super.id, role.hashCode(), argumentNumber,
+					MorphaStemmer.stemToken(words.get(predicateIndex).word).hashCode(), category.getNumberOfArguments());
+		}
+
 	};
 
 	public final static Collection<ArgumentSlotFeature> argumentSlotFeatures;
@@ -5,8 +5,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
-import com.carrotsearch.hppc.ObjectDoubleHashMap;
-
 import edu.uw.easysrl.dependencies.SRLFrame.SRLLabel;
 import edu.uw.easysrl.lemmatizer.MorphaStemmer;
 import edu.uw.easysrl.main.InputReader.InputWord;
@@ -21,7 +19,6 @@ public abstract class BilexicalFeature extends Feature {
 	private static final long serialVersionUID = 1L;
 	private final FeatureKey defaultKey;
 	private int defaultIndex = 0;
-	private double defaultScore = Double.MIN_VALUE;
 
 	BilexicalFeature() {
 		super();
@@ -57,19 +54,10 @@ public abstract class BilexicalFeature extends Feature {
 
 	double getFeatureScore(final List<InputWord> words, final SRLLabel role,
 			final int predicateIndex, final int argumentIndex,
-			final ObjectDoubleHashMap<FeatureKey> featureToScore) {
-		final FeatureKey featureKey = getFeatureKey(words, role,
-				predicateIndex, argumentIndex);
-		final double result = featureToScore.getOrDefault(featureKey,
-				Double.MIN_VALUE);
-		if (result == Double.MIN_VALUE) {
-			if (defaultScore == Double.MIN_VALUE) {
-				defaultScore = featureToScore.get(defaultKey);
-			}
-
-			return defaultScore;
-		}
-		return result;
+			final FeatureWeights featureWeights) {
+		return featureWeights.getWeight(
+				getFeatureHash(words, role, predicateIndex, argumentIndex),
+				this);
 	}
 
 	public FeatureKey getFeatureKey(final List<InputWord> words,
@@ -82,6 +70,12 @@ public abstract class BilexicalFeature extends Feature {
 	abstract FeatureKey getFeatureKey2(List<InputWord> words, SRLLabel role,
 			int predicateIndex, int argumentIndex);
 
+	/**
+	 * Equivalent to hash64(getFeatureKey(...).getValues())
+	 */
+	abstract long getFeatureHash(List<InputWord> words, SRLLabel role,
+			int predicateIndex, int argumentIndex);
+
 	boolean isDependentOnPredicateIndex(
 			@SuppressWarnings("unused") final boolean isCore) {
 		return true;
@@ -166,6 +160,15 @@ public abstract class BilexicalFeature extends Feature {
 							.hashCode(), role.hashCode(), argumentFeature
 							.getValue(words, argumentIndex).hashCode());
 		}
+
+		@Override
+		long getFeatureHash(final List<InputWord> words, final SRLLabel role,
+				final int predicateIndex, final int argumentIndex) {
+			return hash64(super.id,
+					MorphaStemmer.stemToken(words.get(predicateIndex).word)
+							.hashCode(), role.hashCode(), argumentFeature
+							.getValue(words, argumentIndex).hashCode());
+		}
 	}
 
 	/**
@@ -208,6 +211,15 @@ public abstract class BilexicalFeature extends Feature {
 			return key;
 		}
 
+		@Override
+		long getFeatureHash(final List<InputWord> words, final SRLLabel role,
+				final int predicateIndex, final int argumentIndex) {
+			final int nonVerbIndex = role.isCoreArgument() == predicateContext ? argumentIndex
+					: predicateIndex;
+			return hash64(super.id, role.hashCode(), feature.getOffset(),
+					feature.getValue(words, nonVerbIndex).hashCode());
+		}
+
 		@Override
 		boolean isDependentOnPredicateIndex(final boolean isCore) {
 			return isCore != predicateContext;
@@ -255,6 +267,19 @@ public abstract class BilexicalFeature extends Feature {
 
 		}
 
+		@Override
+		long getFeatureHash(final List<InputWord> words, final SRLLabel role,
+				final int predicateIndex, final int argumentIndex) {
+			final int normalizedDistance = Math.max(-maxValue,
+					Math.min(maxValue, predicateIndex - argumentIndex));
+			if (includeWordAtOffset == null) {
+				return hash64(super.id, role.hashCode(), normalizedDistance);
+			} else {
+				return hash64(super.id, role.hashCode(), normalizedDistance,
+						getWord(words, includeWordAtOffset).hashCode());
+			}
+		}
+
 	}
 
 	// eat.ARG1-->cluster47
@@ -278,5 +303,14 @@ public abstract class BilexicalFeature extends Feature {
 							.hashCode(), role.hashCode(),
 					Util.isCapitalized(words.get(argumentIndex).word) ? 7 : 13);
 		}
+
+		@Override
+		long getFeatureHash(final List<InputWord> words, final SRLLabel role,
+				final int predicateIndex, final int argumentIndex) {
+			return hash64(super.id,
+					MorphaStemmer.stemToken(words.get(predicateIndex).word)
+							.hashCode(), role.hashCode(),
+					Util.isCapitalized(words.get(argumentIndex).word) ? 7 : 13);
+		}
 	}
 }
\ No newline at end of file
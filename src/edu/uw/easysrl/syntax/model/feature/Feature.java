@@ -7,8 +7,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import com.carrotsearch.hppc.ObjectDoubleHashMap;
-
 import edu.uw.easysrl.main.InputReader.InputWord;
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.grammar.Combinator.RuleClass;
@@ -89,10 +87,58 @@ public abstract class Feature implements Serializable {
 		return new FeatureKey(objects);
 	}
 
+	/**
+	 * 64-bit hash of a FeatureKey with the given values. The fixed-arity versions below give the same results, without
+	 * allocating an array.
+	 */
+	static long hash64(final int[] values) {
+		long result = HASH_SEED;
+		for (final int value : values) {
+			result = hashStep(result, value);
+		}
+		return hashFinish(result, values.length);
+	}
+
+	static long hash64(final int a) {
+		return hashFinish(hashStep(HASH_SEED, a), 1);
+	}
+
+	static long hash64(final int a, final int b) {
+		return hashFinish(hashStep(hashStep(HASH_SEED, a), b), 2);
+	}
+
+	static long hash64(final int a, final int b, final int c) {
+		return hashFinish(hashStep(hashStep(hashStep(HASH_SEED, a), b), c), 3);
+	}
+
+	static long hash64(final int a, final int b, final int c, final int d) {
+		return hashFinish(hashStep(hashStep(hashStep(hashStep(HASH_SEED, a), b), c), d), 4);
+	}
+
+	static long hash64(final int a, final int b, final int c, final int d, final int e) {
+		return hashFinish(hashStep(hashStep(hashStep(hashStep(hashStep(HASH_SEED, a), b), c), d), e), 5);
+	}
+
+	private final static long HASH_SEED = 0x9E3779B97F4A7C15L;
+
+	private static long hashStep(final long hash, final int value) {
+		return Long.rotateLeft(hash ^ (value * 0x87C37B91114253D5L), 31) * 0x4CF5AD432745937FL;
+	}
+
+	private static long hashFinish(long hash, final int length) {
+		// MurmurHash3 finalizer.
+		hash ^= length;
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
 	public static abstract class UnaryRuleFeature extends Feature {
 		private final FeatureKey defaultKey;
 		private int defaultIndex = 0;
-		private double defaultScore = Double.MIN_VALUE;
 
 		UnaryRuleFeature() {
 			super();
@@ -105,17 +151,8 @@ public abstract class Feature implements Serializable {
 		private static final long serialVersionUID = 1L;
 
 		public double getFeatureScore(final int ruleID, final List<InputWord> sentence, final int spanStart,
-				final int spanEnd, final ObjectDoubleHashMap<FeatureKey> featureToScore) {
-			final FeatureKey featureKey = getFeatureKey(ruleID, sentence, spanStart, spanEnd);
-			final double result = featureToScore.getOrDefault(featureKey, Double.MIN_VALUE);
-			if (result == Double.MIN_VALUE) {
-				if (defaultScore == Double.MIN_VALUE) {
-					defaultScore = featureToScore.get(defaultKey);
-				}
-
-				return defaultScore;
-			}
-			return result;
+				final int spanEnd, final FeatureWeights featureWeights) {
+			return featureWeights.getWeight(getFeatureHash(ruleID, sentence, spanStart, spanEnd), this);
 		}
 
 		@Override
@@ -146,6 +183,12 @@ public abstract class Feature implements Serializable {
 		public abstract FeatureKey getFeatureKey(final int ruleID, final List<InputWord> sentence, final int spanStart,
 				final int spanEnd);
 
+		/**
+		 * Equivalent to hash64(getFeatureKey(...).getValues())
+		 */
+		public abstract long getFeatureHash(final int ruleID, final List<InputWord> sentence, final int spanStart,
+				final int spanEnd);
+
 	}
 
 	private final static UnaryRuleFeature unaryRuleIDFeature = new UnaryRuleFeature() {
@@ -157,6 +200,12 @@ public abstract class Feature implements Serializable {
 				final int spanEnd) {
 			return hash(super.id, ruleID);
 		}
+
+		@Override
+		public long getFeatureHash(final int ruleID, final List<InputWord> sentence, final int spanStart,
+				final int spanEnd) {
+			return hash64(super.id, ruleID);
+		}
 	};
 
 	@SuppressWarnings("unused")
@@ -169,6 +218,12 @@ public abstract class Feature implements Serializable {
 				final int spanEnd) {
 			return hash(super.id, ruleID, Math.min(10, spanEnd - spanStart));
 		}
+
+		@Override
+		public long getFeatureHash(final int ruleID, final List<InputWord> sentence, final int spanStart,
+				final int spanEnd) {
+			return hash64(super.id, ruleID, Math.min(10, spanEnd - spanStart));
+		}
 	};
 
 	@SuppressWarnings("unused")
@@ -181,6 +236,12 @@ public abstract class Feature implements Serializable {
 				final int spanEnd) {
 			return hash(super.id, ruleID, (spanStart == 0 ? "" : sentence.get(spanStart - 1).word).hashCode());
 		}
+
+		@Override
+		public long getFeatureHash(final int ruleID, final List<InputWord> sentence, final int spanStart,
+				final int spanEnd) {
+			return hash64(super.id, ruleID, (spanStart == 0 ? "" : sentence.get(spanStart - 1).word).hashCode());
+		}
 	};
 	public final static Collection<UnaryRuleFeature> unaryRules = Arrays.asList(unaryRuleIDFeature);
 
@@ -188,7 +249,6 @@ public abstract class Feature implements Serializable {
 		private static final long serialVersionUID = 1L;
 		private final FeatureKey defaultKey;
 		private int defaultIndex = 0;
-		private double defaultScore = Double.MIN_VALUE;
 
 		RootCategoryFeature() {
 			super();
@@ -209,16 +269,8 @@ public abstract class Feature implements Serializable {
 		}
 
 		public double getFeatureScore(final List<InputWord> words, final Category category,
-				final ObjectDoubleHashMap<FeatureKey> featureToScore) {
-			final FeatureKey featureKey = getFeatureKey(category, words);
-			final double result = featureToScore.getOrDefault(featureKey, Double.MIN_VALUE);
-			if (result == Double.MIN_VALUE) {
-				if (defaultScore == Double.MIN_VALUE) {
-					defaultScore = featureToScore.get(defaultKey);
-				}
-				return defaultScore;
-			}
-			return result;
+				final FeatureWeights featureWeights) {
+			return featureWeights.getWeight(getFeatureHash(category, words), this);
 		}
 
 		@Override
@@ -233,6 +285,11 @@ public abstract class Feature implements Serializable {
 
 		public abstract FeatureKey getFeatureKey(Category category, List<InputWord> sentence);
 
+		/**
+		 * Equivalent to hash64(getFeatureKey(...).getValues())
+		 */
+		public abstract long getFeatureHash(Category category, List<InputWord> sentence);
+
 		public static RootCategoryFeature justCategoryFeature = new RootCategoryFeature() {
 			private static final long serialVersionUID = 1L;
 
@@ -240,6 +297,11 @@ public abstract class Feature implements Serializable {
 			public FeatureKey getFeatureKey(final Category category, final List<InputWord> sentence) {
 				return hash(super.id, category.hashCode());
 			}
+
+			@Override
+			public long getFeatureHash(final Category category, final List<InputWord> sentence) {
+				return hash64(super.id, category.hashCode());
+			}
 		};
 
 		public static RootCategoryFeature categoryAndFirstWord = new RootCategoryFeature() {
@@ -250,6 +312,11 @@ public abstract class Feature implements Serializable {
 			public FeatureKey getFeatureKey(final Category category, final List<InputWord> sentence) {
 				return hash(super.id, category.hashCode(), sentence.get(0).word.hashCode());
 			}
+
+			@Override
+			public long getFeatureHash(final Category category, final List<InputWord> sentence) {
+				return hash64(super.id, category.hashCode(), sentence.get(0).word.hashCode());
+			}
 		};
 
 		public static RootCategoryFeature categoryAndLastWord = new RootCategoryFeature() {
@@ -260,6 +327,11 @@ public abstract class Feature implements Serializable {
 			public FeatureKey getFeatureKey(final Category category, final List<InputWord> sentence) {
 				return hash(super.id, category.hashCode(), sentence.get(sentence.size() - 1).word.hashCode());
 			}
+
+			@Override
+			public long getFeatureHash(final Category category, final List<InputWord> sentence) {
+				return hash64(super.id, category.hashCode(), sentence.get(sentence.size() - 1).word.hashCode());
+			}
 		};
 
 		public static RootCategoryFeature categoryAndLength = new RootCategoryFeature() {
@@ -270,6 +342,11 @@ public abstract class Feature implements Serializable {
 			public FeatureKey getFeatureKey(final Category category, final List<InputWord> sentence) {
 				return hash(super.id, category.hashCode(), sentence.size());
 			}
+
+			@Override
+			public long getFeatureHash(final Category category, final List<InputWord> sentence) {
+				return hash64(super.id, category.hashCode(), sentence.size());
+			}
 		};
 
 		public final static Collection<RootCategoryFeature> features = Arrays.asList(justCategoryFeature,
@@ -282,7 +359,6 @@ public abstract class Feature implements Serializable {
 		private static final long serialVersionUID = 1L;
 		private final FeatureKey defaultKey;
 		private int defaultIndex = 0;
-		private double defaultScore = Double.MIN_VALUE;
 
 		BinaryFeature() {
 			super();
@@ -321,21 +397,27 @@ public abstract class Feature implements Serializable {
 				final Category left, final RuleClass leftRuleClass, final int leftLength, final Category right,
 				final RuleClass rightRuleClass, int rightLength, List<InputWord> sentence);
 
+		/**
+		 * Equivalent to hash64(getFeatureKey(...).getValues())
+		 */
+		public abstract long getFeatureHash(final Category category, final RuleType ruleClass, final Category left,
+				final RuleClass leftRuleClass, final int leftLength, final Category right,
+				final RuleClass rightRuleClass, int rightLength, List<InputWord> sentence);
+
+		/**
+		 * True if the feature only depends on the categories of the left and right children, so that its score can be
+		 * cached for each pair of categories.
+		 */
+		public boolean isOnlyDependentOnChildCategories() {
+			return false;
+		}
+
 		public double getFeatureScore(final Category category, final RuleType ruleClass, final Category left,
 				final RuleClass leftRuleClass, final int leftLength, final Category right,
 				final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence,
-				final ObjectDoubleHashMap<FeatureKey> featureToScore) {
-			final FeatureKey featureKey = getFeatureKey(category, ruleClass, left, leftRuleClass, leftLength, right,
-					rightRuleClass, rightLength, sentence);
-			final double result = featureToScore.getOrDefault(featureKey, Double.MIN_VALUE);
-			if (result == Double.MIN_VALUE) {
-				if (defaultScore == Double.MIN_VALUE) {
-					defaultScore = featureToScore.get(defaultKey);
-				}
-
-				return defaultScore;
-			}
-			return result;
+				final FeatureWeights featureWeights) {
+			return featureWeights.getWeight(getFeatureHash(category, ruleClass, left, leftRuleClass, leftLength, right,
+					rightRuleClass, rightLength, sentence), this);
 		}
 
 		private final static BinaryFeature leftAndRightFeature = new BinaryFeature() {
@@ -347,6 +429,18 @@ public abstract class Feature implements Serializable {
 					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
 				return hash(super.id, left.hashCode(), right.hashCode());
 			}
+
+			@Override
+			public long getFeatureHash(final Category result, final RuleType ruleClass, final Category left,
+					final RuleClass leftRuleClass, final int leftLength, final Category right,
+					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
+				return hash64(super.id, left.hashCode(), right.hashCode());
+			}
+
+			@Override
+			public boolean isOnlyDependentOnChildCategories() {
+				return true;
+			}
 		};
 
 		@SuppressWarnings("unused")
@@ -359,6 +453,13 @@ public abstract class Feature implements Serializable {
 					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
 				return hash(super.id, left.hashCode(), right.hashCode(), result.hashCode());
 			}
+
+			@Override
+			public long getFeatureHash(final Category result, final RuleType ruleClass, final Category left,
+					final RuleClass leftRuleClass, final int leftLength, final Category right,
+					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
+				return hash64(super.id, left.hashCode(), right.hashCode(), result.hashCode());
+			}
 		};
 
 		@SuppressWarnings("unused")
@@ -371,6 +472,13 @@ public abstract class Feature implements Serializable {
 					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
 				return hash(super.id, ruleClass.toString().hashCode());
 			}
+
+			@Override
+			public long getFeatureHash(final Category result, final RuleType ruleClass, final Category left,
+					final RuleClass leftRuleClass, final int leftLength, final Category right,
+					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
+				return hash64(super.id, ruleClass.toString().hashCode());
+			}
 		};
 
 		// Aimed at cases where a unary rule is used, and should apply nearby
@@ -385,6 +493,13 @@ public abstract class Feature implements Serializable {
 					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
 				return hash(super.id, leftRuleClass.toString().hashCode(), left.hashCode(), rightLength);
 			}
+
+			@Override
+			public long getFeatureHash(final Category result, final RuleType ruleClass, final Category left,
+					final RuleClass leftRuleClass, final int leftLength, final Category right,
+					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
+				return hash64(super.id, leftRuleClass.toString().hashCode(), left.hashCode(), rightLength);
+			}
 		};
 
 		@SuppressWarnings("unused")
@@ -397,6 +512,13 @@ public abstract class Feature implements Serializable {
 					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
 				return hash(super.id, rightRuleClass.toString().hashCode(), right.hashCode(), leftLength);
 			}
+
+			@Override
+			public long getFeatureHash(final Category result, final RuleType ruleClass, final Category left,
+					final RuleClass leftRuleClass, final int leftLength, final Category right,
+					final RuleClass rightRuleClass, final int rightLength, final List<InputWord> sentence) {
+				return hash64(super.id, rightRuleClass.toString().hashCode(), right.hashCode(), leftLength);
+			}
 		};
 
 		public static Collection<BinaryFeature> getFeatures() {
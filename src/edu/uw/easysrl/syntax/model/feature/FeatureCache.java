@@ -1,49 +1,52 @@
 package edu.uw.easysrl.syntax.model.feature;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-
-import com.carrotsearch.hppc.ObjectDoubleHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import edu.uw.easysrl.dependencies.SRLFrame.SRLLabel;
 import edu.uw.easysrl.main.InputReader.InputWord;
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.grammar.Preposition;
-import edu.uw.easysrl.syntax.model.feature.Feature.FeatureKey;
 
 /**
  *
- * Caches out features to save re-computing them
+ * Caches out features to save re-computing them.
+ *
+ * The cache's arrays are reused by the next FeatureCache created on the same thread, so a FeatureCache must not be used
+ * after another one is created on its thread. Parsers finish with each sentence's model before making the next one.
  */
 public class FeatureCache {
 
-	private final ObjectDoubleHashMap<SRLLabel>[] predicateToLabelToScore;
-	private final ObjectDoubleHashMap<SRLLabel>[] argumentToLabelToScore;
 	private final SlotFeatureCache slotFeatureCache;
 	private final List<InputWord> words;
 
 	private final List<Map<Category, Double>> wordToCategoryToScore;
+	private final Buffers buffers;
+	private final int numberOfLabels;
 
 	private final List<BilexicalFeature> justPredicateFeaturesCore = new ArrayList<>();
 	private final List<BilexicalFeature> justArgumentFeaturesCore = new ArrayList<>();;
 	private final List<BilexicalFeature> justPredicateFeaturesAdjunct = new ArrayList<>();
 	private final List<BilexicalFeature> justArgumentFeaturesAdjunct = new ArrayList<>();;
 	private final List<BilexicalFeature> bilexicalFeatures = new ArrayList<>();
-	private final ObjectDoubleHashMap<FeatureKey> featureToScore;
+	private final FeatureWeights featureWeights;
 
-	@SuppressWarnings("unchecked")
-	public FeatureCache(final List<InputWord> words, final ObjectDoubleHashMap<FeatureKey> featureToScore,
+	public FeatureCache(final List<InputWord> words, final FeatureWeights featureWeights,
 			final FeatureSet featureSet, final double supertaggerWeight, final SlotFeatureCache slotFeatureCache) {
 
 		this.slotFeatureCache = slotFeatureCache;
 		this.wordToCategoryToScore = featureSet.lexicalCategoryFeatures.getCategoryScores(words, supertaggerWeight);
 
-		this.predicateToLabelToScore = new ObjectDoubleHashMap[words.size()];
-		this.argumentToLabelToScore = new ObjectDoubleHashMap[words.size()];
+		this.numberOfLabels = SRLLabel.numberOfLabels();
+		this.buffers = threadLocalBuffers.get();
+		buffers.reset(wordToCategoryToScore, numberOfLabels);
 		this.words = words;
-		this.featureToScore = featureToScore;
+		this.featureWeights = featureWeights;
 
 		// TODO uuuurgh tidy all this if it works!
 		for (final BilexicalFeature feature : featureSet.dependencyFeatures) {
@@ -81,60 +84,56 @@ public class FeatureCache {
 	}
 
 	public double getScore(final int predicateIndex, final SRLLabel role, final int argumentIndex) {
-		final ObjectDoubleHashMap<SRLLabel> predicateLabelToScore = getLabelToScore(predicateIndex,
-				predicateToLabelToScore);
-		final ObjectDoubleHashMap<SRLLabel> argumentLabelToScore = getLabelToScore(argumentIndex,
-				argumentToLabelToScore);
 		double result = 0.0;
 
 		// Features that only apply to the local context of the predicate. These will be shared across all the word's
 		// dependencies.
-		final double justPredicateScore = predicateLabelToScore.getOrDefault(role, Double.MIN_VALUE);
-		if (justPredicateScore == Double.MIN_VALUE) {
+		final int predicateLabel = predicateIndex * numberOfLabels + role.getID();
+		if (isComputed(buffers.predicateComputed, predicateLabel)) {
+			result += buffers.predicateScores[predicateLabel];
+		} else {
 			double score = 0.0;
 			for (final BilexicalFeature feature : role.isCoreArgument() ? justPredicateFeaturesCore
 					: justPredicateFeaturesAdjunct) {
-				score += feature.getFeatureScore(words, role, predicateIndex, argumentIndex, featureToScore);
+				score += feature.getFeatureScore(words, role, predicateIndex, argumentIndex, featureWeights);
 			}
 
-			predicateLabelToScore.put(role, score);
+			buffers.predicateScores[predicateLabel] = score;
+			setComputed(buffers.predicateComputed, predicateLabel);
 			result += score;
-		} else {
-			result += justPredicateScore;
 		}
 
 		// Features that only apply to the local context of the argument. These will be shared across all the word's
 		// dependencies.
-		final double justArgumentScore = argumentLabelToScore.getOrDefault(role, Double.MIN_VALUE);
-		if (justArgumentScore == Double.MIN_VALUE) {
+		final int argumentLabel = argumentIndex * numberOfLabels + role.getID();
+		if (isComputed(buffers.argumentComputed, argumentLabel)) {
+			result += buffers.argumentScores[argumentLabel];
+		} else {
 			double score = 0.0;
 			for (final BilexicalFeature feature : role.isCoreArgument() ? justArgumentFeaturesCore
 					: justArgumentFeaturesAdjunct) {
-				score += feature.getFeatureScore(words, role, predicateIndex, argumentIndex, featureToScore);
+				score += feature.getFeatureScore(words, role, predicateIndex, argumentIndex, featureWeights);
 			}
 
-			argumentLabelToScore.put(role, score);
+			buffers.argumentScores[argumentLabel] = score;
+			setComputed(buffers.argumentComputed, argumentLabel);
 			result += score;
-		} else {
-			result += justArgumentScore;
 		}
 
 		// Bilexical features.
 		for (final BilexicalFeature feature : bilexicalFeatures) {
-			result += feature.getFeatureScore(words, role, predicateIndex, argumentIndex, featureToScore);
+			result += feature.getFeatureScore(words, role, predicateIndex, argumentIndex, featureWeights);
 		}
 
 		return result;
 	}
 
-	private ObjectDoubleHashMap<SRLLabel> getLabelToScore(final int predicateIndex,
-			final ObjectDoubleHashMap<SRLLabel>[] predicateToLabelToScore) {
-		ObjectDoubleHashMap<SRLLabel> labelToScore = predicateToLabelToScore[predicateIndex];
-		if (labelToScore == null) {
-			labelToScore = new ObjectDoubleHashMap<>();
-			predicateToLabelToScore[predicateIndex] = labelToScore;
-		}
-		return labelToScore;
+	private static boolean isComputed(final long[] computed, final int index) {
+		return (computed[index >>> 6] & (1L << index)) != 0;
+	}
+
+	private static void setComputed(final long[] computed, final int index) {
+		computed[index >>> 6] |= 1L << index;
 	}
 
 	public double getScore(final List<InputWord> words, final int wordIndex, final Category category,
@@ -143,21 +142,100 @@ public class FeatureCache {
 	}
 
 	public double getScore(final int wordIndex, final Category category) {
-		return wordToCategoryToScore.get(wordIndex).getOrDefault(category, Double.NEGATIVE_INFINITY);
+		final float[] categoryToScore = buffers.lexicalScores[wordIndex];
+		return category.getID() < categoryToScore.length ? categoryToScore[category.getID()] : Double.NEGATIVE_INFINITY;
 	}
 
 	public Collection<Category> getCategoriesAtIndex(final int wordIndex) {
 		return wordToCategoryToScore.get(wordIndex).keySet();
 	}
 
+	private final static ThreadLocal<Buffers> threadLocalBuffers = ThreadLocal.withInitial(Buffers::new);
+
+	/**
+	 * Arrays used by a FeatureCache, which are recycled for each sentence on a thread.
+	 */
+	private static class Buffers {
+		// Lexical category scores, indexed by word and category ID.
+		private float[][] lexicalScores = new float[0][];
+		// The scores that were set in lexicalScores, which need resetting before the arrays are reused.
+		private List<Map<Category, Double>> lexicalScoresSet = Collections.emptyList();
+
+		// Scores of features that only depend on the predicate or argument, indexed by word and label ID. Scores are
+		// only valid if the corresponding bit is set in the computed bitset.
+		private double[] predicateScores = new double[0];
+		private double[] argumentScores = new double[0];
+		private long[] predicateComputed = new long[0];
+		private long[] argumentComputed = new long[0];
+
+		private void reset(final List<Map<Category, Double>> wordToCategoryToScore, final int numberOfLabels) {
+			for (int i = 0; i < lexicalScoresSet.size(); i++) {
+				for (final Category category : lexicalScoresSet.get(i).keySet()) {
+					lexicalScores[i][category.getID()] = Float.NEGATIVE_INFINITY;
+				}
+			}
+
+			if (lexicalScores.length < wordToCategoryToScore.size()) {
+				final int oldLength = lexicalScores.length;
+				lexicalScores = Arrays.copyOf(lexicalScores, wordToCategoryToScore.size());
+				for (int i = oldLength; i < lexicalScores.length; i++) {
+					lexicalScores[i] = newLexicalScores(new float[0], Category.numberOfCategories());
+				}
+			}
+
+			for (int i = 0; i < wordToCategoryToScore.size(); i++) {
+				for (final Map.Entry<Category, Double> entry : wordToCategoryToScore.get(i).entrySet()) {
+					final int id = entry.getKey().getID();
+					if (id >= lexicalScores[i].length) {
+						lexicalScores[i] = newLexicalScores(lexicalScores[i], Math.max(id + 1,
+								Category.numberOfCategories()));
+					}
+					lexicalScores[i][id] = entry.getValue().floatValue();
+				}
+			}
+			lexicalScoresSet = wordToCategoryToScore;
+
+			final int size = wordToCategoryToScore.size() * numberOfLabels;
+			if (predicateScores.length < size) {
+				predicateScores = new double[size];
+				argumentScores = new double[size];
+				predicateComputed = new long[(size + 63) / 64];
+				argumentComputed = new long[(size + 63) / 64];
+			} else {
+				Arrays.fill(predicateComputed, 0, (size + 63) / 64, 0L);
+				Arrays.fill(argumentComputed, 0, (size + 63) / 64, 0L);
+			}
+		}
+
+		private static float[] newLexicalScores(final float[] oldScores, final int length) {
+			final float[] result = Arrays.copyOf(oldScores, length);
+			Arrays.fill(result, oldScores.length, length, Float.NEGATIVE_INFINITY);
+			return result;
+		}
+	}
+
+	/**
+	 * Caches the scores of the unlexicalized argument slot features. This is shared by all sentences, and is safe to
+	 * use from multiple threads.
+	 *
+	 * Scores are stored in a row for each category, which is allocated when the category is first seen. Entries are
+	 * read and written atomically, and entries that haven't been computed yet hold a marker value. Two threads may
+	 * both compute a missing entry, but they store the same score.
+	 */
 	public static class SlotFeatureCache {
-		private final ObjectDoubleHashMap<FeatureKey> featureToScore;
+		private final static int MAX_SLOTS = 6;
+		// A NaN that isn't produced by arithmetic, so it can't be confused with a score.
+		private final static long NOT_COMPUTED = 0x7FF0DEADBEEF0001L;
+
+		private final FeatureWeights featureWeights;
 		private final List<ArgumentSlotFeature> lexicalizedSlotFeatures = new ArrayList<>();
 		private final List<ArgumentSlotFeature> unlexicalizedSlotFeatures = new ArrayList<>();
-		private final double[][][][] categoryToSlotToPrepositionToScore = new double[Category.numberOfCategories()][6][Preposition
-				.numberOfPrepositions() + 1][SRLLabel.numberOfLabels()];
+		private final int numberOfPrepositions = Preposition.numberOfPrepositions() + 1;
+		private final int numberOfLabels = SRLLabel.numberOfLabels();
+		// Scores for each category ID, indexed by slot, preposition and label. Holds the bits of the doubles.
+		private volatile AtomicLongArray[] categoryToScores = new AtomicLongArray[0];
 
-		public SlotFeatureCache(final FeatureSet featureSet, final ObjectDoubleHashMap<FeatureKey> featureToScore) {
+		public SlotFeatureCache(final FeatureSet featureSet, final FeatureWeights featureWeights) {
 			for (final ArgumentSlotFeature feature : featureSet.argumentSlotFeatures) {
 				if (feature.isLexicalized()) {
 					lexicalizedSlotFeatures.add(feature);
@@ -166,29 +244,55 @@ public class FeatureCache {
 				}
 			}
 
-			this.featureToScore = featureToScore;
+			this.featureWeights = featureWeights;
 		}
 
 		public double getScore(final List<InputWord> words, final int wordIndex, final Category category,
 				final Preposition preposition, final int slot, final SRLLabel role) {
-			final int prepIndex = preposition.getID();
-			double score = categoryToSlotToPrepositionToScore[category.getID()][slot][prepIndex][role.getID()];
-			if (score == 0.0) {
+			final AtomicLongArray scores = getScores(category);
+			final int index = (slot * numberOfPrepositions + preposition.getID()) * numberOfLabels + role.getID();
+			final long bits = scores.get(index);
+			double score;
+			if (bits == NOT_COMPUTED) {
+				score = 0.0;
 				for (final ArgumentSlotFeature feature : unlexicalizedSlotFeatures) {
 					score += feature.getFeatureScore(words, wordIndex, role, category, slot, preposition,
-							featureToScore);
+							featureWeights);
 				}
 
-				categoryToSlotToPrepositionToScore[category.getID()][slot][prepIndex][role.getID()] = score;
+				scores.set(index, Double.doubleToRawLongBits(score));
+			} else {
+				score = Double.longBitsToDouble(bits);
 			}
 
 			for (final ArgumentSlotFeature feature : lexicalizedSlotFeatures) {
-				score += feature.getFeatureScore(words, wordIndex, role, category, slot, preposition, featureToScore);
+				score += feature.getFeatureScore(words, wordIndex, role, category, slot, preposition, featureWeights);
 			}
 
 			return score;
 		}
 
+		private AtomicLongArray getScores(final Category category) {
+			final AtomicLongArray[] table = categoryToScores;
+			final AtomicLongArray result = category.getID() < table.length ? table[category.getID()] : null;
+			return result == null ? makeScores(category.getID()) : result;
+		}
+
+		private synchronized AtomicLongArray makeScores(final int categoryID) {
+			AtomicLongArray[] table = categoryToScores;
+			if (categoryID >= table.length) {
+				table = Arrays.copyOf(table, Math.max(categoryID + 1, Category.numberOfCategories()));
+			}
+
+			if (table[categoryID] == null) {
+				final long[] scores = new long[MAX_SLOTS * numberOfPrepositions * numberOfLabels];
+				Arrays.fill(scores, NOT_COMPUTED);
+				table[categoryID] = new AtomicLongArray(scores);
+			}
+
+			categoryToScores = table;
+			return table[categoryID];
+		}
 	}
 
 }
@@ -0,0 +1,43 @@
+package edu.uw.easysrl.syntax.model.feature;
+
+import java.util.Map;
+
+import com.carrotsearch.hppc.LongFloatHashMap;
+
+import edu.uw.easysrl.syntax.model.feature.Feature.FeatureKey;
+
+/**
+ * Feature weights for parsing, stored by the 64-bit hash of their FeatureKey in an open-addressed table. Features
+ * compute the hash directly from their components (see Feature.hash64()), so looking up a weight doesn't need to
+ * allocate a FeatureKey.
+ */
+public class FeatureWeights {
+	private final LongFloatHashMap hashToWeight;
+
+	public FeatureWeights(final Map<FeatureKey, Integer> featureToIndex, final double[] weights) {
+		this.hashToWeight = new LongFloatHashMap(featureToIndex.size(), 0.5);
+		for (final Map.Entry<FeatureKey, Integer> entry : featureToIndex.entrySet()) {
+			put(entry.getKey(), weights[entry.getValue()]);
+		}
+	}
+
+	public void put(final FeatureKey key, final double weight) {
+		hashToWeight.put(Feature.hash64(key.getValues()), (float) weight);
+	}
+
+	/**
+	 * Returns the weight for a key of the feature, or the weight of the feature's default key if the key wasn't seen
+	 * in training.
+	 */
+	double getWeight(final long hash, final Feature feature) {
+		int index = hashToWeight.indexOf(hash);
+		if (!hashToWeight.indexExists(index)) {
+			index = hashToWeight.indexOf(Feature.hash64(feature.id));
+			if (!hashToWeight.indexExists(index)) {
+				return 0.0;
+			}
+		}
+
+		return hashToWeight.indexGet(index);
+	}
+}
@@ -5,8 +5,6 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
-import com.carrotsearch.hppc.ObjectDoubleHashMap;
-
 import edu.uw.easysrl.lemmatizer.MorphaStemmer;
 import edu.uw.easysrl.main.InputReader.InputWord;
 import edu.uw.easysrl.syntax.grammar.Category;
@@ -21,7 +19,6 @@ public abstract class PrepositionFeature extends Feature {
 
 	private final FeatureKey defaultKey;
 	private int defaultIndex = 0;
-	private double defaultScore = Double.MIN_VALUE;
 
 	private final static PrepositionFeature wordAndPrepositionFeature = new PrepositionFeature() {
 
@@ -37,6 +34,14 @@ public abstract class PrepositionFeature extends Feature {
 			return hash(super.id, preposition.hashCode(),
 					words.get(wordIndex).word.hashCode());
 		}
+
+		@Override
+		public long getFeatureHash(final List<InputWord> words,
+				final int wordIndex, final Category category,
+				final Preposition preposition, final int argumentNumber) {
+			return hash64(super.id, preposition.hashCode(),
+					words.get(wordIndex).word.hashCode());
+		}
 	};
 
 	private final static PrepositionFeature categoryAndSlotAndPrepositionFeature = new PrepositionFeature() {
@@ -53,6 +58,14 @@ public abstract class PrepositionFeature extends Feature {
 			return hash(super.id, preposition.hashCode(), argumentNumber,
 					category.hashCode());
 		}
+
+		@Override
+		public long getFeatureHash(final List<InputWord> words,
+				final int wordIndex, final Category category,
+				final Preposition preposition, final int argumentNumber) {
+			return hash64(super.id, preposition.hashCode(), argumentNumber,
+					category.hashCode());
+		}
 	};
 
 	private final static PrepositionFeature lemmaAndPrepositionFeature = new PrepositionFeature() {
@@ -69,6 +82,14 @@ public abstract class PrepositionFeature extends Feature {
 			return hash(super.id, preposition.hashCode(), MorphaStemmer
 					.stemToken(words.get(wordIndex).word).hashCode());
 		}
+
+		@Override
+		public long getFeatureHash(final List<InputWord> words,
+				final int wordIndex, final Category category,
+				final Preposition preposition, final int argumentNumber) {
+			return hash64(super.id, preposition.hashCode(), MorphaStemmer
+					.stemToken(words.get(wordIndex).word).hashCode());
+		}
 	};
 
 	public final static Collection<PrepositionFeature> prepositionFeaures;
@@ -114,22 +135,19 @@ public abstract class PrepositionFeature extends Feature {
 			int wordIndex, Category category, Preposition preposition,
 			int argumentNumber);
 
+	/**
+	 * Equivalent to hash64(getFeatureKey(...).getValues())
+	 */
+	public abstract long getFeatureHash(List<InputWord> words,
+			int wordIndex, Category category, Preposition preposition,
+			int argumentNumber);
+
 	public double getFeatureScore(final List<InputWord> words,
 			final int wordIndex, final Preposition preposition,
 			final Category category, final int argumentNumber,
-			final ObjectDoubleHashMap<FeatureKey> featureToScore) {
-		final FeatureKey featureKey = getFeatureKey(words, wordIndex, category,
-				preposition, argumentNumber);
-		final double result = featureToScore.getOrDefault(featureKey,
-				Double.MIN_VALUE);
-		if (result == Double.MIN_VALUE) {
-			if (defaultScore == Double.MIN_VALUE) {
-				defaultScore = featureToScore.get(defaultKey);
-			}
-
-			return defaultScore;
-		}
-		return result;
+			final FeatureWeights featureWeights) {
+		return featureWeights.getWeight(getFeatureHash(words, wordIndex,
+				category, preposition, argumentNumber), this);
 	}
 
 }
\ No newline at end of file
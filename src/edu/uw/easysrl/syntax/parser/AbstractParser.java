@@ -10,12 +10,11 @@ import com.google.common.collect.Table.Cell;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import edu.uw.easysrl.dependencies.Coindexation;
@@ -29,6 +28,7 @@ import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.grammar.Category.Slash;
 import edu.uw.easysrl.syntax.grammar.Combinator;
 import edu.uw.easysrl.syntax.grammar.Combinator.RuleProduction;
+import edu.uw.easysrl.syntax.grammar.GrammarClosure;
 import edu.uw.easysrl.syntax.grammar.NormalForm;
 import edu.uw.easysrl.syntax.grammar.SeenRules;
 import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
@@ -66,6 +66,7 @@ public abstract class AbstractParser implements Parser {
 			combinators.addAll(Combinator.loadSpecialCombinators(extraCombinatorsFile));
 		}
 		this.binaryRules = ImmutableList.copyOf(combinators);
+		this.ruleCache = new Combinator.RuleTable(binaryRules);
 
 		possibleRootCategories = ImmutableSet.copyOf(validRootCategories);
 		this.seenRules = new SeenRules(seenRulesFile, lexicalCategories);
@@ -96,9 +97,32 @@ public abstract class AbstractParser implements Parser {
 		this.normalForm = builder.getNormalForm();
 		this.nbestBeam = builder.getNbestBeam();
 
-		for (final Cell<Category, Category, List<RuleProduction>> entry : seenRules.ruleTable().cellSet()) {
-			// Cache out all the rules in advance.
-			getRules(entry.getRowKey(), entry.getColumnKey());
+		final GrammarClosure closure = loadGrammarClosure(builder.getGrammarClosureFile(), builder.getCombinators());
+		this.ruleCache = new Combinator.RuleTable(binaryRules, closure);
+		if (closure == null) {
+			for (final Cell<Category, Category, List<RuleProduction>> entry : seenRules.ruleTable().cellSet()) {
+				// Cache out all the rules in advance.
+				getRules(entry.getRowKey(), entry.getColumnKey());
+			}
+		}
+	}
+
+	/**
+	 * Loads a precomputed grammar closure, if the model has one that was made for these combinators.
+	 */
+	private static GrammarClosure loadGrammarClosure(final File file, final List<Combinator> combinators) {
+		if (file == null) {
+			return null;
+		}
+
+		try {
+			final GrammarClosure result = GrammarClosure.load(file, combinators);
+			if (result == null) {
+				System.err.println("Ignoring " + file + ", which was made with different combinators");
+			}
+			return result;
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
 		}
 	}
 
@@ -240,25 +264,13 @@ public abstract class AbstractParser implements Parser {
 	 */
 	protected abstract List<Scored<SyntaxTreeNode>> parse(InputToParser sentence);
 
-	private final Map<Category, Map<Category, List<RuleProduction>>> ruleCache = new IdentityHashMap<>();
+	private final Combinator.RuleTable ruleCache;
 
 	/**
 	 * Returns the set of binary rule productions between these two categories.
 	 */
 	protected List<RuleProduction> getRules(final Category left, final Category right) {
-		Map<Category, List<RuleProduction>> rightToRules = ruleCache.get(left);
-		if (rightToRules == null) {
-			rightToRules = new IdentityHashMap<>();
-			ruleCache.put(left, rightToRules);
-		}
-
-		List<RuleProduction> result = rightToRules.get(right);
-		if (result == null) {
-			result = Combinator.getRules(left, right, binaryRules);
-			rightToRules.put(right, result);
-		}
-
-		return result;
+		return ruleCache.getRules(left, right);
 	}
 
 	@Override
@@ -1,23 +1,17 @@
 package edu.uw.easysrl.syntax.parser;
 
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.MinMaxPriorityQueue;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Table;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
-import edu.uw.easysrl.dependencies.UnlabelledDependency;
-import edu.uw.easysrl.syntax.grammar.Category;
-import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
 import edu.uw.easysrl.syntax.model.AgendaItem;
 import edu.uw.easysrl.util.FastTreeMap;
 
@@ -189,73 +183,18 @@ public abstract class ChartCell {
 	}
 
 	/**
-	 * Implements dependency hashing for better N-best parsing, as in Ng&Curran 2012
+	 * Implements dependency hashing for better N-best parsing, as in Ng&Curran 2012. Hashes are computed on demand by
+	 * SyntaxTreeNode.getDependencyHash(), so the factory has no per-sentence state.
 	 */
 	public static class ChartCellNbestFactory extends ChartCellFactory {
 
 		private final int nbest;
 		private final double nbestBeam;
 
-		public ChartCellNbestFactory(final int nbest, final double nbestBeam, final int maxSentenceLength,
-				final Collection<Category> categories) {
+		public ChartCellNbestFactory(final int nbest, final double nbestBeam) {
 			super();
 			this.nbest = nbest;
 			this.nbestBeam = nbestBeam;
-			final Random randomGenerator = new Random();
-
-			// Build a hash for every possible dependency
-			categoryToArgumentToHeadToModifierToHash = HashBasedTable.create();
-			for (final Category c : categories) {
-				for (int i = 1; i <= c.getNumberOfArguments(); i++) {
-					final int[][] array = new int[maxSentenceLength][maxSentenceLength];
-					categoryToArgumentToHeadToModifierToHash.put(c, i, array);
-					for (int head = 0; head < maxSentenceLength; head++) {
-						for (int child = 0; child < maxSentenceLength; child++) {
-							array[head][child] = randomGenerator.nextInt();
-						}
-					}
-				}
-			}
-		}
-
-		public ChartCellNbestFactory(ChartCellNbestFactory other) {
-			this.nbest = other.nbest;
-			this.nbestBeam = other.nbestBeam;
-			this.categoryToArgumentToHeadToModifierToHash = other.categoryToArgumentToHeadToModifierToHash;
-		}
-
-		// A cache of hash scores for nodes, to save recomputing them. I'm not in love with this design, but at least it
-		// keeps all the hashing code in one place.
-		private final Map<SyntaxTreeNode, Integer> nodeToHash = new HashMap<>();
-		private final Table<Category, Integer, int[][]> categoryToArgumentToHeadToModifierToHash;
-
-		private int getHash(final SyntaxTreeNode parse) {
-			Integer result = nodeToHash.get(parse);
-			if (result == null) {
-				result = 0;
-
-				// Add in a hash for each dependency at this node.
-				final List<UnlabelledDependency> resolvedUnlabelledDependencies = parse
-						.getResolvedUnlabelledDependencies();
-				if (resolvedUnlabelledDependencies != null) {
-					for (final UnlabelledDependency dep : resolvedUnlabelledDependencies) {
-						for (final int arg : dep.getArguments()) {
-							if (dep.getHead() != arg) {
-								result = result
-										^ categoryToArgumentToHeadToModifierToHash.get(dep.getCategory(),
-												dep.getArgNumber())[dep.getHead()][arg];
-							}
-						}
-
-					}
-				}
-
-				for (final SyntaxTreeNode child : parse.getChildren()) {
-					result = result ^ getHash(child);
-				}
-			}
-
-			return result;
 		}
 
 		/**
@@ -277,7 +216,6 @@ public abstract class ChartCell {
 						|| (existing.size() > 0 && newEntry.getCost() < existing.get(0).getCost() + Math.log(nbestBeam))) {
 					return false;
 				} else {
-					// Only cache out hashes for nodes that get added to the chart.
 					keyToEntries.put(key, newEntry);
 					return true;
 				}
@@ -310,7 +248,7 @@ public abstract class ChartCell {
 						|| (existing.size() > 0 && newEntry.getCost() < existing.get(0).getCost() + Math.log(nbestBeam))) {
 					return false;
 				} else {
-					final Integer hash = getHash(newEntry.getParse());
+					final Integer hash = newEntry.getParse().getDependencyHash();
 					if (keyToHash.containsEntry(key, hash)) {
 						// Already have an equivalent node.
 						return false;
@@ -318,9 +256,6 @@ public abstract class ChartCell {
 
 					keyToEntries.put(key, newEntry);
 					keyToHash.put(key, hash);
-
-					// Cache out hash for this parse.
-					nodeToHash.put(newEntry.getParse(), hash);
 					return true;
 				}
 			}
@@ -336,11 +271,6 @@ public abstract class ChartCell {
 			return // new CellNBest();
 			new CellNBestWithHashing();
 		}
-
-		@Override
-		public ChartCellFactory forNewSentence() {
-			return new ChartCellNbestFactory(this);
-		}
 	}
 
 }
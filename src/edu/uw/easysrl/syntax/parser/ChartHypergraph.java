@@ -0,0 +1,292 @@
+package edu.uw.easysrl.syntax.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeBinary;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeLabelling;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeUnary;
+import edu.uw.easysrl.syntax.model.AgendaItem;
+import edu.uw.easysrl.util.Util.Scored;
+
+/**
+ * Records the hypergraph explored by 1-best A* search, and lazily enumerates the k-best derivations from it, using
+ * Algorithm 3 from Huang & Chiang (2005) "Better k-best Parsing".
+ *
+ * Each entry in the chart is a vertex. Agenda items that were rejected because their equivalence class was already in
+ * the chart become extra incoming hyperedges of that vertex, so the chart itself never holds more than one entry per
+ * equivalence class.
+ */
+class ChartHypergraph {
+	private final Map<ChartCell, Map<Object, Vertex>> cellToKeyToVertex = new IdentityHashMap<>();
+	private final Map<SyntaxTreeNode, Vertex> nodeToVertex = new IdentityHashMap<>();
+	private final List<Vertex> roots = new ArrayList<>();
+
+	/**
+	 * Records a new entry in the chart.
+	 */
+	void addVertex(final ChartCell cell, final AgendaItem item) {
+		final Vertex vertex = new Vertex(nodeToVertex.size(), item);
+		Map<Object, Vertex> keyToVertex = cellToKeyToVertex.get(cell);
+		if (keyToVertex == null) {
+			keyToVertex = new HashMap<>();
+			cellToKeyToVertex.put(cell, keyToVertex);
+		}
+		keyToVertex.put(item.getEquivalenceClassKey(), vertex);
+		nodeToVertex.put(item.getParse(), vertex);
+		vertex.edges.add(makeEdge(item));
+	}
+
+	/**
+	 * Records an agenda item that was rejected by the cell, because it was equivalent to an existing entry.
+	 */
+	void addEdge(final ChartCell cell, final AgendaItem item) {
+		final Map<Object, Vertex> keyToVertex = cellToKeyToVertex.get(cell);
+		final Vertex vertex = keyToVertex == null ? null : keyToVertex.get(item.getEquivalenceClassKey());
+		if (vertex == null) {
+			return;
+		}
+
+		final Edge edge = makeEdge(item);
+		for (final Vertex tail : edge.tails) {
+			if (tail.length == vertex.length && tail.index > vertex.index) {
+				// Unary rules could make the hypergraph cyclic. Ignore edges that would do that.
+				return;
+			}
+		}
+
+		vertex.edges.add(edge);
+	}
+
+	/**
+	 * Marks an entry in the chart as a complete parse.
+	 */
+	void addRoot(final AgendaItem item) {
+		roots.add(nodeToVertex.get(item.getParse()));
+	}
+
+	private Edge makeEdge(final AgendaItem item) {
+		final List<SyntaxTreeNode> tailNodes = new ArrayList<>(2);
+		findTails(item.getParse(), tailNodes);
+		final Vertex[] tails = new Vertex[tailNodes.size()];
+		double localScore = item.getInsideScore();
+		for (int i = 0; i < tails.length; i++) {
+			tails[i] = nodeToVertex.get(tailNodes.get(i));
+			localScore -= tails[i].getInsideScore();
+		}
+
+		return new Edge(item.getParse(), tailNodes, tails, localScore);
+	}
+
+	/**
+	 * Finds the chart entries that a new node was built from. These are usually its children, but may be further down
+	 * if the model wrapped the node (e.g. to label its dependencies).
+	 */
+	private void findTails(final SyntaxTreeNode node, final List<SyntaxTreeNode> result) {
+		for (final SyntaxTreeNode child : node.getChildren()) {
+			if (nodeToVertex.containsKey(child)) {
+				result.add(child);
+			} else {
+				findTails(child, result);
+			}
+		}
+	}
+
+	/**
+	 * Returns up to k complete parses, best first. Parses are only returned if their score is within the beam of the
+	 * best parse. If uniqueDependencies is set, parses with the same dependencies as a better parse are skipped.
+	 */
+	List<Scored<SyntaxTreeNode>> getKBest(final int k, final double beam, final boolean uniqueDependencies) {
+		// A dummy goal vertex, which can be derived from any complete parse.
+		final Vertex goal = new Vertex(nodeToVertex.size(), null);
+		for (final Vertex root : roots) {
+			goal.edges.add(new Edge(null, null, new Vertex[] { root }, 0.0));
+		}
+
+		final List<Scored<SyntaxTreeNode>> result = new ArrayList<>(k);
+		final Set<Integer> dependencyHashes = new HashSet<>();
+		for (int i = 0; result.size() < k; i++) {
+			final Derivation derivation = goal.getDerivation(i);
+			if (derivation == null || (i > 0 && derivation.score < goal.derivations.get(0).score + Math.log(beam))) {
+				break;
+			}
+
+			final SyntaxTreeNode parse = derivation.getParse();
+			if (!uniqueDependencies || dependencyHashes.add(parse.getDependencyHash())) {
+				result.add(new Scored<>(parse, derivation.score));
+			}
+		}
+
+		return result;
+	}
+
+	private static class Vertex {
+		// Order that vertices were added to the chart.
+		private final int index;
+		private final int length;
+		private final AgendaItem item;
+		private final List<Edge> edges = new ArrayList<>();
+		// Derivations found so far, best first.
+		private final List<Derivation> derivations = new ArrayList<>();
+		private PriorityQueue<Derivation> candidates;
+		private Set<Derivation> seenCandidates;
+
+		private Vertex(final int index, final AgendaItem item) {
+			this.index = index;
+			this.item = item;
+			this.length = item == null ? Integer.MAX_VALUE : item.getSpanLength();
+		}
+
+		private double getInsideScore() {
+			return item.getInsideScore();
+		}
+
+		/**
+		 * Returns the derivation with the given rank (from 0), or null if there are fewer derivations.
+		 */
+		private Derivation getDerivation(final int rank) {
+			if (candidates == null) {
+				// Initialize the candidates with the best derivation using each incoming edge.
+				candidates = new PriorityQueue<>();
+				seenCandidates = new HashSet<>();
+				for (final Edge edge : edges) {
+					addCandidate(edge, new int[edge.tails.length]);
+				}
+			}
+
+			while (derivations.size() <= rank) {
+				if (derivations.size() > 0) {
+					// Add the neighbours of the last derivation as candidates.
+					final Derivation last = derivations.get(derivations.size() - 1);
+					for (int i = 0; i < last.ranks.length; i++) {
+						final int[] ranks = Arrays.copyOf(last.ranks, last.ranks.length);
+						ranks[i]++;
+						addCandidate(last.edge, ranks);
+					}
+				}
+
+				if (candidates.isEmpty()) {
+					return null;
+				}
+				derivations.add(candidates.poll());
+			}
+
+			return derivations.get(rank);
+		}
+
+		private void addCandidate(final Edge edge, final int[] ranks) {
+			double score = edge.localScore;
+			final Derivation[] children = new Derivation[ranks.length];
+			for (int i = 0; i < ranks.length; i++) {
+				children[i] = edge.tails[i].getDerivation(ranks[i]);
+				if (children[i] == null) {
+					return;
+				}
+				score += children[i].score;
+			}
+
+			final Derivation candidate = new Derivation(edge, ranks, children, score);
+			if (seenCandidates.add(candidate)) {
+				candidates.add(candidate);
+			}
+		}
+	}
+
+	private static class Edge {
+		// The node built by this edge, using the 1-best derivations of the tails.
+		private final SyntaxTreeNode node;
+		private final List<SyntaxTreeNode> tailNodes;
+		private final Vertex[] tails;
+		private final double localScore;
+
+		private Edge(final SyntaxTreeNode node, final List<SyntaxTreeNode> tailNodes, final Vertex[] tails,
+				final double localScore) {
+			this.node = node;
+			this.tailNodes = tailNodes;
+			this.tails = tails;
+			this.localScore = localScore;
+		}
+	}
+
+	private static class Derivation implements Comparable<Derivation> {
+		private final Edge edge;
+		private final int[] ranks;
+		private final Derivation[] children;
+		private final double score;
+		private SyntaxTreeNode parse;
+
+		private Derivation(final Edge edge, final int[] ranks, final Derivation[] children, final double score) {
+			this.edge = edge;
+			this.ranks = ranks;
+			this.children = children;
+			this.score = score;
+		}
+
+		private SyntaxTreeNode getParse() {
+			if (parse == null) {
+				if (edge.node == null) {
+					// Edge from the goal vertex.
+					parse = children[0].getParse();
+				} else {
+					parse = rebuild(edge.node);
+				}
+			}
+
+			return parse;
+		}
+
+		/**
+		 * Copies the edge's node, replacing the 1-best derivations of the tails with the ones used in this derivation.
+		 */
+		private SyntaxTreeNode rebuild(final SyntaxTreeNode node) {
+			final int tail = edge.tailNodes.indexOf(node);
+			if (tail > -1) {
+				return children[tail].getParse();
+			} else if (node instanceof SyntaxTreeNodeBinary) {
+				final SyntaxTreeNode left = rebuild(node.getChild(0));
+				final SyntaxTreeNode right = rebuild(node.getChild(1));
+				return left == node.getChild(0) && right == node.getChild(1) ? node : new SyntaxTreeNodeBinary(
+						node.getCategory(), left, right, node.getRuleType(), node.getHeadIsLeft(),
+						node.getDependencyStructure(), node.getResolvedUnlabelledDependencies());
+			} else if (node instanceof SyntaxTreeNodeUnary) {
+				final SyntaxTreeNodeUnary unary = (SyntaxTreeNodeUnary) node;
+				final SyntaxTreeNode child = rebuild(unary.getChild());
+				return child == unary.getChild() ? node : new SyntaxTreeNodeUnary(node.getCategory(), child,
+						node.getDependencyStructure(), unary.getUnaryRule(), node.getResolvedUnlabelledDependencies());
+			} else if (node instanceof SyntaxTreeNodeLabelling) {
+				final SyntaxTreeNode child = rebuild(node.getChild(0));
+				return child == node.getChild(0) ? node : new SyntaxTreeNodeLabelling(child,
+						node.getDependenciesLabelledAtThisNode(), node.getResolvedUnlabelledDependencies());
+			} else {
+				return node;
+			}
+		}
+
+		@Override
+		public int compareTo(final Derivation other) {
+			return Double.compare(other.score, score);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(edge) + Arrays.hashCode(ranks);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Derivation)) {
+				return false;
+			}
+			final Derivation other = (Derivation) obj;
+			return edge == other.edge && Arrays.equals(ranks, other.ranks);
+		}
+	}
+}
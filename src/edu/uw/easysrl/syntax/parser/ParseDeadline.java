@@ -0,0 +1,58 @@
+package edu.uw.easysrl.syntax.parser;
+
+import java.util.List;
+
+import edu.uw.easysrl.main.InputReader.InputWord;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.util.Util.Scored;
+
+/**
+ * Stops parsing when the deadline for the current thread has passed, returning the parses found so far (if any).
+ * Deadlines are set per thread, so that one parser can serve requests with different deadlines.
+ */
+public class ParseDeadline implements ParserListener {
+	// How many chart insertions to make between checking the time.
+	private final static int CHECK_INTERVAL = 64;
+	private final static long NO_DEADLINE = Long.MAX_VALUE;
+
+	private final static class State {
+		private long deadlineNanos = NO_DEADLINE;
+		private int insertions = 0;
+	}
+
+	private final static ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+
+	/**
+	 * Sets the deadline for parses on this thread, as a System.nanoTime() value.
+	 */
+	public static void set(final long deadlineNanos) {
+		state.get().deadlineNanos = deadlineNanos;
+	}
+
+	public static void clear() {
+		state.get().deadlineNanos = NO_DEADLINE;
+	}
+
+	public static boolean hasPassed() {
+		final long deadline = state.get().deadlineNanos;
+		return deadline != NO_DEADLINE && System.nanoTime() - deadline > 0;
+	}
+
+	@Override
+	public void handleNewSentence(final List<InputWord> words) {
+	}
+
+	@Override
+	public boolean handleChartInsertion(final Agenda agenda) {
+		final State current = state.get();
+		if (current.deadlineNanos == NO_DEADLINE || ++current.insertions % CHECK_INTERVAL != 0) {
+			return true;
+		}
+		return System.nanoTime() - current.deadlineNanos < 0;
+	}
+
+	@Override
+	public void handleSearchCompletion(final List<Scored<SyntaxTreeNode>> result, final Agenda agenda,
+			final int chartSize) {
+	}
+}
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 
 import edu.uw.easysrl.dependencies.DependencyStructure;
 import edu.uw.easysrl.dependencies.UnlabelledDependency;
@@ -35,6 +36,7 @@ public class ParserAStar extends AbstractParser {
 	protected final ChartCellFactory cellFactory;
 	protected final boolean usingDependencies;
 	protected final List<ParserListener> listeners;
+	protected final boolean lazyNbest;
 
 	@Deprecated
 	public ParserAStar(final ModelFactory modelFactory, final int maxSentenceLength, final int nbest,
@@ -45,6 +47,7 @@ public class ParserAStar extends AbstractParser {
 		this.modelFactory = modelFactory;
 		this.maxChartSize = maxChartSize;
 		this.usingDependencies = modelFactory.isUsingDependencies();
+		this.lazyNbest = false;
 		this.cellFactory = chooseCellFactory(modelFactory, nbest);
 
 		// Get default arguments for newer parameters.
@@ -57,9 +60,8 @@ public class ParserAStar extends AbstractParser {
 		final ChartCellFactory cellFactory;
 		if (!this.modelFactory.isUsingDynamicProgram()) {
 			cellFactory = CellNoDynamicProgram.factory();
-		} else if (nbest > 1) {
-			cellFactory = new ChartCellNbestFactory(this.nbest, this.nbestBeam, super.maxLength,
-					super.lexicalCategories);
+		} else if (nbest > 1 && !lazyNbest) {
+			cellFactory = new ChartCellNbestFactory(this.nbest, this.nbestBeam);
 		} else if (modelFactory.isUsingDependencies()) {
 			cellFactory = Cell1Best.factory();
 		} else {
@@ -75,11 +77,20 @@ public class ParserAStar extends AbstractParser {
 		this.maxAgendaSize = builder.getMaxAgendaSize();
 		this.listeners = builder.getListeners();
 		this.usingDependencies = modelFactory.isUsingDependencies();
+		this.lazyNbest = builder.getLazyNbest() && nbest > 1 && modelFactory.isUsingDynamicProgram();
 		this.cellFactory = chooseCellFactory(modelFactory, nbest);
 	}
 
 	@Override
 	protected List<Scored<SyntaxTreeNode>> parse(final InputToParser input) {
+		return parse(input, this::isValidStep);
+	}
+
+	/**
+	 * Runs A* search, only adding steps to the agenda if they are accepted by isValidStep. The constraint is supplied
+	 * per call, so that constrained searches can run concurrently.
+	 */
+	protected List<Scored<SyntaxTreeNode>> parse(final InputToParser input, final Predicate<SyntaxTreeNode> isValidStep) {
 		final ChartCellFactory sentenceCellFactory = cellFactory.forNewSentence();
 		final List<InputWord> sentence = input.getInputWords();
 		for (final ParserListener listener : listeners) {
@@ -106,10 +117,13 @@ public class ParserAStar extends AbstractParser {
 		// Dummy final cell that the complete parses are stored in.
 		final ChartCell finalCell = sentenceCellFactory.make();
 
+		// For lazy N-best parsing, the chart only stores the 1-best entries, but we record the alternatives here.
+		final ChartHypergraph hypergraph = lazyNbest ? new ChartHypergraph() : null;
+
 		while (chartSize < maxChartSize
 				&& !agenda.isEmpty()
 				&& agenda.size() < maxAgendaSize
-				&& (result.isEmpty() || (result.size() < nbest &&
+				&& (result.isEmpty() || ((lazyNbest || result.size() < nbest) &&
 					agenda.peek().getCost() > result.get(0).getScore() + Math.log(nbestBeam)))) {
 			// Add items from the agenda, until we have enough parses.
 			final AgendaItem agendaItem = agenda.peek();
@@ -138,25 +152,33 @@ public class ParserAStar extends AbstractParser {
 				chartSize++;
 				agenda.poll();
 				// If a new entry was added, update the agenda.
+				if (hypergraph != null) {
+					hypergraph.addVertex(cell, agendaItem);
+				}
 
 				// Is the new entry an acceptable complete parse?
 				if (agendaItem.getSpanLength() == sentenceLength
 						&& (possibleRootCategories.isEmpty() || possibleRootCategories.contains(agendaItem.getParse()
-								.getCategory())) &&
-								// For N-best parsing, the final cell checks if that the final parse is unique. e.g. if it's
-								// dependencies are unique, ignoring the category
-								finalCell.add("", agendaItem)) {
-					result.add(new Scored<>(agendaItem.getParse(), agendaItem.getInsideScore()));
+								.getCategory()))) {
+					if (hypergraph != null) {
+						hypergraph.addRoot(agendaItem);
+					}
+
+					// For N-best parsing, the final cell checks if that the final parse is unique. e.g. if it's
+					// dependencies are unique, ignoring the category
+					if (finalCell.add("", agendaItem)) {
+						result.add(new Scored<>(agendaItem.getParse(), agendaItem.getInsideScore()));
+					}
 				}
 
 				// See if any Unary Rules can be applied to the new entry.
-				updateAgendaUnary(model, agendaItem, agenda);
+				updateAgendaUnary(model, agendaItem, agenda, isValidStep);
 
 				// See if the new entry can be the left argument of any binary rules.
 				for (final ChartCell rightCell : cellsStartingAt.get(agendaItem.getStartOfSpan()
 						+ agendaItem.getSpanLength())) {
 					for (final AgendaItem rightEntry : rightCell.getEntries()) {
-						updateAgenda(agenda, agendaItem, rightEntry, model);
+						updateAgenda(agenda, agendaItem, rightEntry, model, isValidStep);
 					}
 				}
 
@@ -164,15 +186,29 @@ public class ParserAStar extends AbstractParser {
 				// rules.
 				for (final ChartCell leftCell : cellsEndingAt.get(agendaItem.getStartOfSpan())) {
 					for (final AgendaItem leftEntry : leftCell.getEntries()) {
-						updateAgenda(agenda, leftEntry, agendaItem, model);
+						updateAgenda(agenda, leftEntry, agendaItem, model, isValidStep);
 					}
 				}
 			} else {
+				for (final ParserListener listener : listeners) {
+					listener.handleChartRejection(agenda);
+				}
+				if (hypergraph != null) {
+					// Keep the equivalent entry as an alternative derivation.
+					hypergraph.addEdge(cell, agendaItem);
+				}
 				agenda.poll();
 			}
 		}
 
-		final List<Scored<SyntaxTreeNode>> finalResult = result.isEmpty() ? null : result;
+		final List<Scored<SyntaxTreeNode>> finalResult;
+		if (result.isEmpty()) {
+			finalResult = null;
+		} else if (hypergraph != null) {
+			finalResult = hypergraph.getKBest(nbest, nbestBeam, usingDependencies);
+		} else {
+			finalResult = result;
+		}
 
 		for (final ParserListener listener : listeners) {
 			listener.handleSearchCompletion(finalResult, agenda, chartSize);
@@ -184,7 +220,8 @@ public class ParserAStar extends AbstractParser {
 	/**
 	 * Updates the agenda with of any unary rules that can be applied.
 	 */
-	protected void updateAgendaUnary(final Model model, final AgendaItem newItem, final Agenda agenda) {
+	protected void updateAgendaUnary(final Model model, final AgendaItem newItem, final Agenda agenda,
+			final Predicate<SyntaxTreeNode> isValidStep) {
 		final SyntaxTreeNode parse = newItem.getParse();
 		final List<UnaryRule> ruleProductions = unaryRules.get(parse.getCategory());
 		if (ruleProductions.isEmpty()) {
@@ -210,7 +247,7 @@ public class ParserAStar extends AbstractParser {
 					newNode = new SyntaxTreeNodeUnary(unaryRule.getResult(), parse, null, unaryRule, null);
 				}
 
-				if (isValidStep(newNode)) {
+				if (isValidStep.test(newNode)) {
 					agenda.add(model.unary(newItem, newNode, unaryRule));
 				}
 			}
@@ -220,7 +257,8 @@ public class ParserAStar extends AbstractParser {
 	/**
 	 * Updates the agenda with the result of all combinators that can be applied to leftChild and rightChild.
 	 */
-	protected void updateAgenda(final Agenda agenda, final AgendaItem left, final AgendaItem right, final Model model) {
+	protected void updateAgenda(final Agenda agenda, final AgendaItem left, final AgendaItem right, final Model model,
+			final Predicate<SyntaxTreeNode> isValidStep) {
 
 		final SyntaxTreeNode leftChild = left.getParse();
 		final SyntaxTreeNode rightChild = right.getParse();
@@ -255,7 +293,7 @@ public class ParserAStar extends AbstractParser {
 							production.getRuleType(), production.isHeadIsLeft(), null, null);
 				}
 
-				if (isValidStep(newNode)) {
+				if (isValidStep.test(newNode)) {
 					agenda.add(model.combineNodes(left, right, newNode));
 				}
 			}
@@ -14,6 +14,7 @@ import java.util.Map;
 import edu.uw.easysrl.dependencies.Coindexation;
 import edu.uw.easysrl.syntax.grammar.Category;
 import edu.uw.easysrl.syntax.grammar.Combinator;
+import edu.uw.easysrl.syntax.grammar.GrammarClosure;
 import edu.uw.easysrl.syntax.grammar.NormalForm;
 import edu.uw.easysrl.syntax.grammar.SeenRules;
 import edu.uw.easysrl.syntax.model.CutoffsDictionaryInterface;
@@ -70,6 +71,10 @@ public abstract class ParserBuilder<T extends ParserBuilder<T>> {
 		return seenRules;
 	}
 
+	public File getGrammarClosureFile() {
+		return grammarClosureFile;
+	}
+
 	public boolean getAllowUnseenRules() {
 		return allowUnseenRules;
 	}
@@ -78,6 +83,10 @@ public abstract class ParserBuilder<T extends ParserBuilder<T>> {
 		return supertaggerBeam;
 	}
 
+	public long getMaxCachedForestBytes() {
+		return maxCachedForestBytes;
+	}
+
 	public Boolean getJointModel() {
 		return jointModel;
 	}
@@ -122,6 +131,10 @@ public abstract class ParserBuilder<T extends ParserBuilder<T>> {
 		return nbestBeam;
 	}
 
+	public boolean getLazyNbest() {
+		return lazyNbest;
+	}
+
 	public List<ParserListener> getListeners() {
 		return listeners;
 	}
@@ -133,8 +146,10 @@ public abstract class ParserBuilder<T extends ParserBuilder<T>> {
 	private ListMultimap<Category, UnaryRule> unaryRules;
 	private File markedupFile;
 	private SeenRules seenRules;
+	private File grammarClosureFile;
 	private boolean allowUnseenRules = false;
 	private double supertaggerBeam = 0.00001;
+	private long maxCachedForestBytes = SRLFactoredModelFactory.DEFAULT_MAX_CACHED_FOREST_BYTES;
 	private Boolean jointModel;
 	private Double supertaggerWeight;
 	private Tagger tagger;
@@ -146,6 +161,7 @@ public abstract class ParserBuilder<T extends ParserBuilder<T>> {
 	private int maxAgendaSize = Integer.MAX_VALUE;
 	private NormalForm normalForm = new NormalForm();
 	private double nbestBeam = 0.001;
+	private boolean lazyNbest = false;
 	private List<ParserListener> listeners = Collections.emptyList();
 
 	public T nBest(final int nBest) {
@@ -183,6 +199,14 @@ public abstract class ParserBuilder<T extends ParserBuilder<T>> {
 		return getThis();
 	}
 
+	/**
+	 * Approximate bound on the memory the joint model uses to cache lexical entries between sentences.
+	 */
+	public T maxCachedForestBytes(final long maxCachedForestBytes) {
+		this.maxCachedForestBytes = maxCachedForestBytes;
+		return getThis();
+	}
+
 	public T useSupertaggedInput() {
 		this.useSupertaggedInput = true;
 		return getThis();
@@ -208,6 +232,14 @@ public abstract class ParserBuilder<T extends ParserBuilder<T>> {
 		return getThis();
 	}
 
+	/**
+	 * If true, N-best lists are extracted lazily from a 1-best chart, rather than by keeping N entries per chart cell.
+	 */
+	public T lazyNbest(final boolean lazyNbest) {
+		this.lazyNbest = lazyNbest;
+		return getThis();
+	}
+
 	public T modelFolder(final File modelFolder) {
 		this.modelFolder = modelFolder;
 		this.jointModel = new File(modelFolder, "weights").exists();
@@ -215,6 +247,8 @@ public abstract class ParserBuilder<T extends ParserBuilder<T>> {
 			this.unaryRules = AbstractParser.loadUnaryRules(new File(modelFolder, "unaryRules"));
 			this.lexicalCategories = TaggerEmbeddings.loadCategories(new File(modelFolder, "categories"));
 			this.seenRules = new SeenRules(new File(modelFolder, "seenRules"), lexicalCategories);
+			final File closureFile = new File(modelFolder, GrammarClosure.FILE_NAME);
+			this.grammarClosureFile = closureFile.exists() ? closureFile : null;
 			final File cutoffsFile = new File(modelFolder, "cutoffs");
 			cutoffs = cutoffsFile.exists() ? Util.deserialize(cutoffsFile) : null;
 			if (new File(modelFolder, "markedup").exists()) {
@@ -249,7 +283,7 @@ public abstract class ParserBuilder<T extends ParserBuilder<T>> {
 					modelFactory = new SRLFactoredModelFactory(weights,
 							Util.<FeatureSet>deserialize(new File(modelFolder, "features"))
 									.setSupertaggingFeature(new File(modelFolder, "/pipeline"), supertaggerBeam),
-							lexicalCategories, cutoffs, keyToIndex);
+							lexicalCategories, cutoffs, keyToIndex, maxCachedForestBytes);
 
 				} else {
 					final Tagger tagger = !useSupertaggedInput ?
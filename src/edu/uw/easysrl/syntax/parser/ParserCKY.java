@@ -11,7 +11,6 @@ import edu.uw.easysrl.dependencies.DependencyStructure;
 import edu.uw.easysrl.dependencies.UnlabelledDependency;
 import edu.uw.easysrl.main.InputReader.InputToParser;
 import edu.uw.easysrl.syntax.grammar.Category;
-import edu.uw.easysrl.syntax.grammar.Combinator;
 import edu.uw.easysrl.syntax.grammar.Combinator.RuleClass;
 import edu.uw.easysrl.syntax.grammar.Combinator.RuleProduction;
 import edu.uw.easysrl.syntax.grammar.Combinator.RuleType;
@@ -148,8 +147,7 @@ public class ParserCKY extends AbstractParser {
 					continue;
 				}
 
-				for (final RuleProduction rule : Combinator.getRules(l.getParse().getCategory(), r.getParse()
-						.getCategory(), binaryRules)) {
+				for (final RuleProduction rule : getRules(l.getParse().getCategory(), r.getParse().getCategory())) {
 
 					final RuleClass leftRuleClass = l.getParse().getRuleType().getNormalFormClassForRule();
 					final RuleType ruleType = rule.getRuleType();
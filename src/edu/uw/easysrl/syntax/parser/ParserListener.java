@@ -12,5 +12,9 @@ public interface ParserListener {
 	// Returns whether or not to keep parsing.
 	boolean handleChartInsertion(final Agenda agenda);
 
+	// Called when an item is popped from the agenda, but not added to the chart.
+	default void handleChartRejection(final Agenda agenda) {
+	}
+
 	void handleSearchCompletion(final List<Scored<SyntaxTreeNode>> result, final Agenda agenda, final int chartSize);
 }
@@ -0,0 +1,416 @@
+package edu.uw.easysrl.syntax.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.google.common.io.Files;
+
+import edu.uw.easysrl.main.InputReader.InputWord;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.util.Util.Scored;
+
+/**
+ * ParserListener that collects statistics about the search, grouped by sentence length. Useful for tuning the
+ * maximum chart size, supertagger beam and capacity.
+ *
+ * Recording is lock-free, so one instance can be shared between parsing threads. If the listener is attached to the
+ * first parser in a BackoffSRLParser, the failures are the sentences that were backed off.
+ */
+public class ParserMetrics implements ParserListener, ParserMetricsMBean {
+	private final static int[] DEFAULT_LENGTH_BUCKETS = { 10, 20, 30, 40, 50, 70, 100, Integer.MAX_VALUE };
+
+	private final int[] lengthBuckets;
+	private final LengthBucket[] buckets;
+	private final ThreadLocal<SentenceState> currentSentence = ThreadLocal.withInitial(SentenceState::new);
+
+	public ParserMetrics() {
+		this(DEFAULT_LENGTH_BUCKETS);
+	}
+
+	/**
+	 * @param lengthBuckets
+	 *            Ascending inclusive upper bounds on the sentence length of each bucket. Longer sentences go in the
+	 *            last bucket.
+	 */
+	public ParserMetrics(final int[] lengthBuckets) {
+		this.lengthBuckets = Arrays.copyOf(lengthBuckets, lengthBuckets.length);
+		this.buckets = new LengthBucket[lengthBuckets.length];
+		for (int i = 0; i < lengthBuckets.length; i++) {
+			final int min = i == 0 ? 1 : lengthBuckets[i - 1] + 1;
+			final int max = lengthBuckets[i];
+			buckets[i] = new LengthBucket(max == Integer.MAX_VALUE ? min + "+" : min + "-" + max);
+		}
+	}
+
+	private static class SentenceState {
+		private long startTime;
+		private int length;
+		private long insertions;
+		private long rejections;
+		private int agendaPeak;
+	}
+
+	/**
+	 * Statistics for sentences in one length bucket.
+	 */
+	private static class LengthBucket {
+		private final String label;
+		private final LongAdder failures = new LongAdder();
+		private final Histogram latencySeconds = new Histogram(-14, 9);
+		private final Histogram chartSize = new Histogram(0, 24);
+		private final Histogram agendaPeakSize = new Histogram(0, 24);
+		private final Histogram popsPerInsertion = new Histogram(0, 12);
+
+		private LengthBucket(final String label) {
+			this.label = label;
+		}
+
+		private Histogram[] getHistograms() {
+			return new Histogram[] { latencySeconds, chartSize, agendaPeakSize, popsPerInsertion };
+		}
+	}
+
+	private final static String[] HISTOGRAM_NAMES = { "latency_seconds", "chart_size", "agenda_peak_size",
+			"pops_per_insertion" };
+
+	@Override
+	public void handleNewSentence(final List<InputWord> words) {
+		final SentenceState state = currentSentence.get();
+		state.startTime = System.nanoTime();
+		state.length = words.size();
+		state.insertions = 0;
+		state.rejections = 0;
+		state.agendaPeak = 0;
+	}
+
+	@Override
+	public boolean handleChartInsertion(final Agenda agenda) {
+		final SentenceState state = currentSentence.get();
+		state.insertions++;
+		if (agenda != null && agenda.size() > state.agendaPeak) {
+			state.agendaPeak = agenda.size();
+		}
+		return true;
+	}
+
+	@Override
+	public void handleChartRejection(final Agenda agenda) {
+		final SentenceState state = currentSentence.get();
+		state.rejections++;
+		if (agenda != null && agenda.size() > state.agendaPeak) {
+			state.agendaPeak = agenda.size();
+		}
+	}
+
+	@Override
+	public void handleSearchCompletion(final List<Scored<SyntaxTreeNode>> result, final Agenda agenda,
+			final int chartSize) {
+		final SentenceState state = currentSentence.get();
+		final LengthBucket bucket = buckets[getBucket(state.length)];
+		bucket.latencySeconds.record((System.nanoTime() - state.startTime) / 1e9);
+		bucket.chartSize.record(chartSize);
+		if (agenda != null) {
+			// The CKY parser has no agenda.
+			bucket.agendaPeakSize.record(Math.max(state.agendaPeak, agenda.size()));
+		}
+		if (state.insertions > 0) {
+			bucket.popsPerInsertion.record((double) (state.insertions + state.rejections) / state.insertions);
+		}
+		if (result == null) {
+			bucket.failures.increment();
+		}
+	}
+
+	private int getBucket(final int length) {
+		for (int i = 0; i < lengthBuckets.length - 1; i++) {
+			if (length <= lengthBuckets[i]) {
+				return i;
+			}
+		}
+		return lengthBuckets.length - 1;
+	}
+
+	/**
+	 * Registers this object with the platform MBean server, under edu.uw.easysrl:type=ParserMetrics,name=[name].
+	 */
+	public void registerMBean(final String name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+				new ObjectName("edu.uw.easysrl:type=ParserMetrics,name=" + ObjectName.quote(name)));
+	}
+
+	/**
+	 * Writes the metrics to a file, in Prometheus text format if the file name ends in .prom, and JSON otherwise.
+	 */
+	public void writeTo(final File file) throws IOException {
+		final String text = file.getName().endsWith(".prom") ? getPrometheusText() : getJson();
+		Files.write(text, file, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public String getJson() {
+		final StringBuilder result = new StringBuilder();
+		result.append("{\"lengthBuckets\":[");
+		for (int i = 0; i < buckets.length; i++) {
+			final LengthBucket bucket = buckets[i];
+			if (i > 0) {
+				result.append(",");
+			}
+			result.append("{\"length\":\"" + bucket.label + "\"");
+			result.append(",\"sentences\":" + bucket.latencySeconds.getCount());
+			result.append(",\"failures\":" + bucket.failures.sum());
+			final Histogram[] histograms = bucket.getHistograms();
+			for (int j = 0; j < histograms.length; j++) {
+				final Histogram histogram = histograms[j];
+				result.append(",\"" + HISTOGRAM_NAMES[j] + "\":{");
+				result.append("\"count\":" + histogram.getCount());
+				result.append(",\"mean\":" + format(histogram.getMean()));
+				result.append(",\"p50\":" + format(histogram.getPercentile(0.5)));
+				result.append(",\"p90\":" + format(histogram.getPercentile(0.9)));
+				result.append(",\"p99\":" + format(histogram.getPercentile(0.99)));
+				result.append(",\"max\":" + format(histogram.getMax()));
+				result.append("}");
+			}
+			result.append("}");
+		}
+		result.append("]}\n");
+		return result.toString();
+	}
+
+	@Override
+	public String getPrometheusText() {
+		final StringBuilder result = new StringBuilder();
+		result.append("# TYPE easysrl_parser_failures_total counter\n");
+		for (final LengthBucket bucket : buckets) {
+			result.append("easysrl_parser_failures_total{length=\"" + bucket.label + "\"} " + bucket.failures.sum()
+					+ "\n");
+		}
+
+		for (int j = 0; j < HISTOGRAM_NAMES.length; j++) {
+			final String name = "easysrl_parser_" + HISTOGRAM_NAMES[j];
+			result.append("# TYPE " + name + " histogram\n");
+			for (final LengthBucket bucket : buckets) {
+				bucket.getHistograms()[j].appendPrometheus(result, name, "length=\"" + bucket.label + "\"");
+			}
+		}
+		return result.toString();
+	}
+
+	private static String format(final double value) {
+		return String.format(Locale.ROOT, "%.6g", value);
+	}
+
+	private Histogram getTotal(final int histogram) {
+		final Histogram result = buckets[0].getHistograms()[histogram].copy();
+		for (int i = 1; i < buckets.length; i++) {
+			result.add(buckets[i].getHistograms()[histogram]);
+		}
+		return result;
+	}
+
+	@Override
+	public long getSentences() {
+		return getTotal(0).getCount();
+	}
+
+	@Override
+	public long getFailures() {
+		long result = 0;
+		for (final LengthBucket bucket : buckets) {
+			result += bucket.failures.sum();
+		}
+		return result;
+	}
+
+	@Override
+	public double getMeanLatencyMillis() {
+		return 1000 * getTotal(0).getMean();
+	}
+
+	@Override
+	public double getLatencyMillis50thPercentile() {
+		return 1000 * getTotal(0).getPercentile(0.5);
+	}
+
+	@Override
+	public double getLatencyMillis99thPercentile() {
+		return 1000 * getTotal(0).getPercentile(0.99);
+	}
+
+	@Override
+	public double getMeanChartSize() {
+		return getTotal(1).getMean();
+	}
+
+	@Override
+	public double getMaxChartSize() {
+		return getTotal(1).getMax();
+	}
+
+	@Override
+	public double getMeanAgendaPeakSize() {
+		return getTotal(2).getMean();
+	}
+
+	@Override
+	public double getMeanPopsPerInsertion() {
+		return getTotal(3).getMean();
+	}
+
+	@Override
+	public void reset() {
+		for (final LengthBucket bucket : buckets) {
+			bucket.failures.reset();
+			for (final Histogram histogram : bucket.getHistograms()) {
+				histogram.reset();
+			}
+		}
+	}
+
+	/**
+	 * Log-linear histogram of non-negative values, in the style of HdrHistogram. Each power of two is split into
+	 * SUB_BUCKETS equal buckets, so values are recorded with a relative error of at most 1/SUB_BUCKETS. Values below
+	 * 2^minExponent share the first bucket, and values of 2^(maxExponent+1) or more are put in the last bucket.
+	 */
+	public static class Histogram {
+		private final static int SUB_BUCKET_BITS = 3;
+		private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+		private final int minExponent;
+		private final int maxExponent;
+		private final AtomicLongArray counts;
+		private final LongAdder count = new LongAdder();
+		private final DoubleAdder sum = new DoubleAdder();
+		// Bits of the maximum value. For non-negative doubles, the ordering of the bits matches the values.
+		private final AtomicLong maxBits = new AtomicLong();
+
+		public Histogram(final int minExponent, final int maxExponent) {
+			this.minExponent = minExponent;
+			this.maxExponent = maxExponent;
+			this.counts = new AtomicLongArray(1 + (maxExponent - minExponent + 1) * SUB_BUCKETS);
+		}
+
+		public void record(final double value) {
+			counts.incrementAndGet(getIndex(value));
+			count.increment();
+			sum.add(value);
+			final long bits = Double.doubleToRawLongBits(Math.max(value, 0.0));
+			long max = maxBits.get();
+			while (bits > max && !maxBits.compareAndSet(max, bits)) {
+				max = maxBits.get();
+			}
+		}
+
+		private int getIndex(final double value) {
+			if (!(value >= Math.scalb(1.0, minExponent))) {
+				return 0;
+			}
+			final int exponent = Math.getExponent(value);
+			if (exponent > maxExponent) {
+				return counts.length() - 1;
+			}
+			final int subBucket = (int) (Double.doubleToRawLongBits(value) >>> (52 - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+			return 1 + (exponent - minExponent) * SUB_BUCKETS + subBucket;
+		}
+
+		/**
+		 * Exclusive upper bound on the values in a bucket.
+		 */
+		private double getUpperBound(final int index) {
+			if (index == 0) {
+				return Math.scalb(1.0, minExponent);
+			}
+			final int exponent = minExponent + (index - 1) / SUB_BUCKETS;
+			final int subBucket = (index - 1) % SUB_BUCKETS;
+			return Math.scalb(1.0 + (subBucket + 1.0) / SUB_BUCKETS, exponent);
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public double getMean() {
+			final long n = getCount();
+			return n == 0 ? 0.0 : sum.sum() / n;
+		}
+
+		public double getMax() {
+			return Double.longBitsToDouble(maxBits.get());
+		}
+
+		/**
+		 * Returns an upper bound on the given quantile (between 0 and 1), accurate to the bucket width.
+		 */
+		public double getPercentile(final double quantile) {
+			long total = 0;
+			for (int i = 0; i < counts.length(); i++) {
+				total += counts.get(i);
+			}
+			final long target = (long) Math.ceil(quantile * total);
+			long cumulative = 0;
+			for (int i = 0; i < counts.length(); i++) {
+				cumulative += counts.get(i);
+				if (cumulative >= target && cumulative > 0) {
+					return Math.min(getUpperBound(i), getMax());
+				}
+			}
+			return 0.0;
+		}
+
+		/**
+		 * Appends the histogram in Prometheus text format, with a bucket for each power of two.
+		 */
+		void appendPrometheus(final StringBuilder result, final String name, final String labels) {
+			long cumulative = 0;
+			for (int i = 0; i < counts.length(); i++) {
+				cumulative += counts.get(i);
+				if ((i == 0 || i % SUB_BUCKETS == 0) && i < counts.length() - 1) {
+					result.append(name + "_bucket{" + labels + ",le=\"" + getUpperBound(i) + "\"} "
+							+ cumulative + "\n");
+				}
+			}
+			result.append(name + "_bucket{" + labels + ",le=\"+Inf\"} " + cumulative + "\n");
+			result.append(name + "_sum{" + labels + "} " + sum.sum() + "\n");
+			result.append(name + "_count{" + labels + "} " + cumulative + "\n");
+		}
+
+		Histogram copy() {
+			final Histogram result = new Histogram(minExponent, maxExponent);
+			result.add(this);
+			return result;
+		}
+
+		void add(final Histogram other) {
+			for (int i = 0; i < counts.length(); i++) {
+				counts.addAndGet(i, other.counts.get(i));
+			}
+			count.add(other.count.sum());
+			sum.add(other.sum.sum());
+			final long otherMax = other.maxBits.get();
+			long max = maxBits.get();
+			while (otherMax > max && !maxBits.compareAndSet(max, otherMax)) {
+				max = maxBits.get();
+			}
+		}
+
+		public void reset() {
+			for (int i = 0; i < counts.length(); i++) {
+				counts.set(i, 0);
+			}
+			count.reset();
+			sum.reset();
+			maxBits.set(0);
+		}
+	}
+}
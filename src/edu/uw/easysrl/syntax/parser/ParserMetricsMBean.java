@@ -0,0 +1,30 @@
+package edu.uw.easysrl.syntax.parser;
+
+/**
+ * JMX view of {@link ParserMetrics}, aggregated over all sentence lengths.
+ */
+public interface ParserMetricsMBean {
+	long getSentences();
+
+	long getFailures();
+
+	double getMeanLatencyMillis();
+
+	double getLatencyMillis50thPercentile();
+
+	double getLatencyMillis99thPercentile();
+
+	double getMeanChartSize();
+
+	double getMaxChartSize();
+
+	double getMeanAgendaPeakSize();
+
+	double getMeanPopsPerInsertion();
+
+	String getJson();
+
+	String getPrometheusText();
+
+	void reset();
+}
@@ -1,14 +1,17 @@
 package edu.uw.easysrl.syntax.parser;
 
 import java.io.File;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.function.Predicate;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.carrotsearch.hppc.ObjectIntIdentityHashMap;
 
 import edu.uw.easysrl.main.InputReader.InputToParser;
 import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
-import edu.uw.easysrl.util.IdentityWrapper;
-import edu.uw.easysrl.util.SyntaxUtil;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeBinary;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeLabelling;
 import edu.uw.easysrl.util.Util.Scored;
 
 /*
@@ -17,23 +20,10 @@ import edu.uw.easysrl.util.Util.Scored;
  */
 public class ParserReranking extends ParserAStar {
 	protected final Parser baseParser;
-	private final Set<IdentityWrapper<SyntaxTreeNode>> candidateSteps;
 
 	protected ParserReranking(final Builder builder) {
 		super(builder);
 		this.baseParser = builder.getBaseParser();
-		this.candidateSteps = new HashSet<>();
-	}
-
-	private static IdentityWrapper<SyntaxTreeNode> wrapParse(final SyntaxTreeNode node) {
-		// Maps parses to a wrapper where the parse structure is used to test equality.
-		return new IdentityWrapper<>(node, SyntaxUtil::parsesEqual, SyntaxUtil::parseHash);
-	}
-
-	@Override
-	protected boolean isValidStep(final SyntaxTreeNode node) {
-		// Only take a step if the explored node belongs to one of the n-best parses.
-		return candidateSteps.contains(wrapParse(node));
 	}
 
 	@Override
@@ -49,15 +39,144 @@ public class ParserReranking extends ParserAStar {
 		}
 
 		// Add all partial parses to a set which constrains the search.
-		candidateSteps.clear();
-		candidates.stream()
-				.map(Scored::getObject)
-				.flatMap(SyntaxUtil::subtreeStream)
-				.map(ParserReranking::wrapParse)
-				.forEach(candidateSteps::add);
+		final CandidateSteps candidateSteps = new CandidateSteps();
+		for (final Scored<SyntaxTreeNode> candidate : candidates) {
+			candidateSteps.add(candidate.getObject());
+		}
 
 		// Do standard A* parsing with the constraints from the n-best list.
-		return super.parse(input);
+		return super.parse(input, candidateSteps);
+	}
+
+	/**
+	 * The set of steps used by any of the candidate parses, created for each call to parse().
+	 *
+	 * Each distinct step is given an ID, and is identified by its start, length, category, rule type and the IDs of
+	 * its children. The parser only builds nodes out of children that were already accepted (or leaves), so checking
+	 * a new node only needs to look up its children's IDs, rather than hashing the whole subtree.
+	 *
+	 * Models that label dependencies wrap each node in SyntaxTreeNodeLabelling nodes after it has been checked, so
+	 * these are skipped: both in the candidates, and when looking up the children of new nodes.
+	 */
+	private static class CandidateSteps implements Predicate<SyntaxTreeNode> {
+		private final static int START = 0, LENGTH = 1, CATEGORY = 2, RULE = 3, LEFT = 4, RIGHT = 5, NEXT = 6,
+				FIELDS = 7;
+		private final static int NONE = -1;
+
+		// Fields of each step, stored in blocks of FIELDS ints. NEXT chains together steps with the same hash.
+		private final IntArrayList steps = new IntArrayList();
+		private final LongIntHashMap hashToFirstStep = new LongIntHashMap();
+
+		// IDs of nodes built during the search that were found to be candidate steps, offset by 1.
+		private final ObjectIntIdentityHashMap<SyntaxTreeNode> acceptedNodes = new ObjectIntIdentityHashMap<>();
+
+		/**
+		 * Adds all the subtrees of the node, and returns the ID of its step.
+		 */
+		private int add(final SyntaxTreeNode labelledNode) {
+			final SyntaxTreeNode node = unlabelled(labelledNode);
+			final int arity = arity(node);
+			final int left = arity > 0 ? add(node.getChild(0)) : NONE;
+			final int right = arity > 1 ? add(node.getChild(1)) : NONE;
+			final int start = left == NONE ? node.getHeadIndex() : steps.get(left * FIELDS + START);
+			final int category = node.getCategory().getID();
+			final int rule = node.getRuleType().ordinal();
+			final long hash = hash(start, node.getLength(), category, rule, left, right);
+			final int existing = find(hash, start, node.getLength(), category, rule, left, right);
+			if (existing != NONE) {
+				return existing;
+			}
+
+			final int id = steps.size() / FIELDS;
+			steps.add(start, node.getLength(), category, rule, left, right);
+			steps.add(hashToFirstStep.getOrDefault(hash, NONE));
+			hashToFirstStep.put(hash, id);
+			return id;
+		}
+
+		/**
+		 * Returns the ID of the node's step, or NONE if it isn't part of any candidate parse.
+		 */
+		private int getStep(final SyntaxTreeNode node) {
+			final int arity = arity(node);
+			final int left = arity > 0 ? getChildStep(node.getChild(0)) : NONE;
+			final int right = arity > 1 ? getChildStep(node.getChild(1)) : NONE;
+			if ((arity > 0 && left == NONE) || (arity > 1 && right == NONE)) {
+				return NONE;
+			}
+
+			final int start = left == NONE ? node.getHeadIndex() : steps.get(left * FIELDS + START);
+			final int category = node.getCategory().getID();
+			final int rule = node.getRuleType().ordinal();
+			return find(hash(start, node.getLength(), category, rule, left, right), start, node.getLength(), category,
+					rule, left, right);
+		}
+
+		private int getChildStep(final SyntaxTreeNode labelledChild) {
+			final SyntaxTreeNode child = unlabelled(labelledChild);
+			if (child.isLeaf()) {
+				// Leaves are added to the chart without being checked.
+				return getStep(child);
+			}
+
+			return acceptedNodes.getOrDefault(child, 0) - 1;
+		}
+
+		private int find(final long hash, final int start, final int length, final int category, final int rule,
+				final int left, final int right) {
+			int id = hashToFirstStep.getOrDefault(hash, NONE);
+			while (id != NONE) {
+				final int offset = id * FIELDS;
+				if (steps.get(offset + START) == start && steps.get(offset + LENGTH) == length
+						&& steps.get(offset + CATEGORY) == category && steps.get(offset + RULE) == rule
+						&& steps.get(offset + LEFT) == left && steps.get(offset + RIGHT) == right) {
+					return id;
+				}
+				id = steps.get(offset + NEXT);
+			}
+
+			return NONE;
+		}
+
+		private static SyntaxTreeNode unlabelled(SyntaxTreeNode node) {
+			while (node instanceof SyntaxTreeNodeLabelling) {
+				node = node.getChild(0);
+			}
+			return node;
+		}
+
+		private static int arity(final SyntaxTreeNode node) {
+			if (node.isLeaf()) {
+				return 0;
+			} else if (node instanceof SyntaxTreeNodeBinary) {
+				return 2;
+			} else {
+				return 1;
+			}
+		}
+
+		private static long hash(final int start, final int length, final int category, final int rule,
+				final int left, final int right) {
+			long result = start;
+			result = 31 * result + length;
+			result = 31 * result + category;
+			result = 31 * result + rule;
+			result = 0x9E3779B97F4A7C15L * result + left;
+			result = 0x9E3779B97F4A7C15L * result + right;
+			return result ^ (result >>> 32);
+		}
+
+		@Override
+		public boolean test(final SyntaxTreeNode node) {
+			// Only take a step if the explored node belongs to one of the n-best parses.
+			final int step = getStep(node);
+			if (step == NONE) {
+				return false;
+			}
+
+			acceptedNodes.put(node, step + 1);
+			return true;
+		}
 	}
 
 	public static class Builder extends ParserAStar.Builder {
@@ -6,10 +6,18 @@ import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Table;
 
 import edu.uw.easysrl.dependencies.DependencyGenerator;
@@ -100,6 +108,98 @@ public abstract class SRLParser {
 		}
 	}
 
+	/**
+	 * Caches the output of another SRLParser, so that repeated sentences skip POS-tagging, supertagging and parsing.
+	 *
+	 * The cache is bounded by the total number of words in cached sentences, and evicts the least recently used
+	 * entries first. Entries are keyed on the words (and any POS/NER tags) of the sentence, plus a configuration key
+	 * describing the wrapped parser, so a single cache can safely be shared between differently configured parsers.
+	 */
+	public static class CachingSRLParser extends SRLParser {
+		private final SRLParser parser;
+		private final Object configuration;
+		private final Cache<SentenceKey, Optional<List<CCGandSRLparse>>> cache;
+
+		public CachingSRLParser(final SRLParser parser, final long maxCachedWords) {
+			this(parser, parser, makeCache(maxCachedWords));
+		}
+
+		public CachingSRLParser(final SRLParser parser, final Object configuration,
+				final Cache<SentenceKey, Optional<List<CCGandSRLparse>>> cache) {
+			// Tagging is delegated to the wrapped parser, so that cache hits don't need to be POS-tagged.
+			super(new POSTagger() {
+				@Override
+				public List<InputWord> tag(final List<InputWord> words) {
+					return words;
+				}
+			});
+			this.parser = parser;
+			this.configuration = configuration;
+			this.cache = cache;
+		}
+
+		/**
+		 * Makes a cache holding parses for at most maxCachedWords words, which records hit-rate statistics.
+		 */
+		public static Cache<SentenceKey, Optional<List<CCGandSRLparse>>> makeCache(final long maxCachedWords) {
+			return CacheBuilder.newBuilder().maximumWeight(maxCachedWords)
+					.weigher((final SentenceKey key, final Optional<List<CCGandSRLparse>> value) -> key.words.size())
+					.recordStats().build();
+		}
+
+		@Override
+		protected List<CCGandSRLparse> parseTokens2(final InputToParser tokens) {
+			if (tokens.isAlreadyTagged()) {
+				// Supertagged input can't be summarized by the words alone.
+				return parser.parseTokens(tokens);
+			}
+
+			try {
+				return cache.get(new SentenceKey(tokens.getInputWords(), configuration), () -> {
+					final List<CCGandSRLparse> parses = parser.parseTokens(tokens);
+					return Optional.ofNullable(parses == null ? null : ImmutableList.copyOf(parses));
+				}).orElse(null);
+			} catch (final ExecutionException e) {
+				throw Throwables.propagate(e.getCause());
+			}
+		}
+
+		public CacheStats getStats() {
+			return cache.stats();
+		}
+
+		@Override
+		public int getMaxSentenceLength() {
+			return parser.getMaxSentenceLength();
+		}
+
+		public static class SentenceKey {
+			private final List<InputWord> words;
+			private final Object configuration;
+			private final int hash;
+
+			private SentenceKey(final List<InputWord> words, final Object configuration) {
+				this.words = ImmutableList.copyOf(words);
+				this.configuration = configuration;
+				this.hash = Objects.hash(this.words, configuration);
+			}
+
+			@Override
+			public int hashCode() {
+				return hash;
+			}
+
+			@Override
+			public boolean equals(final Object obj) {
+				if (!(obj instanceof SentenceKey)) {
+					return false;
+				}
+				final SentenceKey other = (SentenceKey) obj;
+				return hash == other.hash && configuration.equals(other.configuration) && words.equals(other.words);
+			}
+		}
+	}
+
 	public static class JointSRLParser extends SRLParser {
 		private final Parser parser;
 
@@ -117,7 +217,7 @@ public abstract class SRLParser {
 				return parses
 						.stream()
 						.map(x -> new CCGandSRLparse(x.getObject(), x.getObject().getAllLabelledDependencies(), tokens
-								.getInputWords())).collect(Collectors.toList());
+								.getInputWords(), x.getScore())).collect(Collectors.toList());
 			}
 		}
 
@@ -135,13 +235,15 @@ public abstract class SRLParser {
 		private final List<InputWord> words;
 		private final Table<Integer, Integer, ResolvedDependency> headToArgNumberToDependency = HashBasedTable.create();
 		private final List<SyntaxTreeNodeLeaf> leaves;
+		private final double score;
 
 		private CCGandSRLparse(final SyntaxTreeNode ccgParse, final Collection<ResolvedDependency> dependencyParse,
-				final List<InputWord> words) {
+				final List<InputWord> words, final double score) {
 			super();
 			this.ccgParse = ccgParse;
 			this.dependencyParse = dependencyParse;
 			this.words = words;
+			this.score = score;
 			for (final ResolvedDependency dep : dependencyParse) {
 				headToArgNumberToDependency.put(dep.getHead(), dep.getArgNumber(), dep);
 			}
@@ -156,6 +258,13 @@ public abstract class SRLParser {
 			return dependencyParse;
 		}
 
+		/**
+		 * The parser's score for the CCG parse.
+		 */
+		public double getScore() {
+			return score;
+		}
+
 		public SyntaxTreeNodeLeaf getLeaf(final int wordIndex) {
 			return leaves.get(wordIndex);
 		}
@@ -170,7 +279,7 @@ public abstract class SRLParser {
 		}
 
 		public CCGandSRLparse addSemantics(final Lexicon lexicon) {
-			return new CCGandSRLparse(ccgParse.addSemantics(lexicon, this), dependencyParse, words);
+			return new CCGandSRLparse(ccgParse.addSemantics(lexicon, this), dependencyParse, words, score);
 		}
 
 	}
@@ -210,7 +319,7 @@ public abstract class SRLParser {
 				result.addAll(dep.setLabel(classifier.classify(dep, tokens)).stream()
 						.filter(x -> x.getHead() != x.getArgument()).collect(Collectors.toList()));
 			}
-			return new CCGandSRLparse(annotatedSyntaxTree, result, tokens);
+			return new CCGandSRLparse(annotatedSyntaxTree, result, tokens, parse.getScore());
 		}
 	}
 
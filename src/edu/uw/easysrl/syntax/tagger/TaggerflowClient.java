@@ -0,0 +1,309 @@
+package edu.uw.easysrl.syntax.tagger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.uw.TaggerflowProtos.TaggedSentence;
+import edu.uw.TaggerflowProtos.TaggingInput;
+
+/**
+ * Client for a remote Taggerflow server, which can be used from multiple threads.
+ *
+ * Requests are spread over a pool of connections. The server answers the batches on a connection in the order they
+ * were sent, with one TaggedSentence per input sentence, so several batches can be in flight on one connection: each
+ * request is given an id, and responses are matched to the oldest outstanding request. Broken connections are
+ * reopened by the next request. A request that times out closes its connection, because the server's responses can't
+ * be trusted to arrive after that.
+ */
+public class TaggerflowClient implements AutoCloseable {
+	// Number of times to resend a request after its connection fails.
+	private final static int MAX_RETRIES = 2;
+
+	private final InetSocketAddress address;
+	private final int connectTimeoutMillis;
+	private final long requestTimeoutMillis;
+	private final Connection[] connections;
+	private final AtomicLong nextId = new AtomicLong();
+	private volatile boolean closed = false;
+
+	/**
+	 * @param numberOfConnections
+	 *            Number of connections to open to the server. Connections are opened when they're first needed.
+	 * @param connectTimeoutMillis
+	 *            Maximum time to wait for a connection to open.
+	 * @param requestTimeoutMillis
+	 *            Maximum time to wait for the response to a request, including time waiting for earlier requests on
+	 *            the same connection.
+	 */
+	public TaggerflowClient(final String host, final int port, final int numberOfConnections,
+			final int connectTimeoutMillis, final long requestTimeoutMillis) {
+		this.address = new InetSocketAddress(host, port);
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		this.requestTimeoutMillis = requestTimeoutMillis;
+		this.connections = new Connection[numberOfConnections];
+		for (int i = 0; i < numberOfConnections; i++) {
+			connections[i] = new Connection(i);
+		}
+	}
+
+	/**
+	 * Tags a batch of sentences, returning one TaggedSentence per input sentence. If the connection fails before a
+	 * response arrives, the request is retried on a new connection.
+	 */
+	public List<TaggedSentence> tag(final TaggingInput input) {
+		try {
+			return tag(input, MAX_RETRIES);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private List<TaggedSentence> tag(final TaggingInput input, final int retries) throws InterruptedException {
+		if (input.getSentenceCount() == 0) {
+			return new ArrayList<>();
+		}
+
+		final Connection connection = chooseConnection();
+		final Request request;
+		try {
+			request = connection.send(input);
+		} catch (final IOException e) {
+			if (retries > 0) {
+				return tag(input, retries - 1);
+			}
+			throw new UncheckedIOException(e);
+		}
+
+		try {
+			return request.result.get(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			connection.fail(request.socket, new IOException("Request " + request.id + " timed out after "
+					+ requestTimeoutMillis + "ms"));
+			throw new UncheckedIOException(new IOException("Taggerflow request " + request.id + " to " + address
+					+ " timed out after " + requestTimeoutMillis + "ms"));
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				if (retries > 0 && !closed) {
+					return tag(input, retries - 1);
+				}
+				throw new UncheckedIOException((IOException) e.getCause());
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Chooses the connection with the fewest outstanding sentences.
+	 */
+	private Connection chooseConnection() {
+		Connection result = connections[0];
+		for (final Connection connection : connections) {
+			if (connection.getPendingSentences() < result.getPendingSentences()) {
+				result = connection;
+			}
+		}
+		return result;
+	}
+
+	private static class Request {
+		private final long id;
+		private final int numberOfSentences;
+		// The connection's socket when the request was sent.
+		private final Socket socket;
+		private final CompletableFuture<List<TaggedSentence>> result = new CompletableFuture<>();
+
+		private Request(final long id, final int numberOfSentences, final Socket socket) {
+			this.id = id;
+			this.numberOfSentences = numberOfSentences;
+			this.socket = socket;
+		}
+	}
+
+	/**
+	 * A connection to the server, with a thread that reads its responses. The socket is replaced if it breaks.
+	 *
+	 * Writes are serialized by writeLock. The connection's own monitor guards the socket and the pending requests, and is
+	 * never held during I/O, so the reader and fail() don't wait for a writer that's blocked on a full socket.
+	 */
+	private class Connection {
+		private final int index;
+		private final Object writeLock = new Object();
+		private Socket socket;
+		private OutputStream out;
+		// Requests waiting for a response, oldest first.
+		private final Deque<Request> pending = new ArrayDeque<>();
+		private int pendingSentences = 0;
+
+		private Connection(final int index) {
+			this.index = index;
+		}
+
+		private synchronized int getPendingSentences() {
+			return pendingSentences;
+		}
+
+		/**
+		 * Writes a request, opening a new socket if necessary. Requests are queued and written under the write lock, so
+		 * that they're queued in the same order that they're sent.
+		 */
+		private Request send(final TaggingInput input) throws IOException {
+			synchronized (writeLock) {
+				if (closed) {
+					throw new IllegalStateException("Taggerflow client is closed");
+				}
+				if (getSocket() == null) {
+					connect();
+				}
+
+				final Request request;
+				final OutputStream requestOut;
+				synchronized (this) {
+					if (socket == null) {
+						// Failed (or the client was closed) since it was opened.
+						throw new IOException("Connection to Taggerflow server at " + address + " was closed");
+					}
+					request = new Request(nextId.getAndIncrement(), input.getSentenceCount(), socket);
+					requestOut = out;
+					pending.addLast(request);
+					pendingSentences += request.numberOfSentences;
+				}
+
+				try {
+					input.writeDelimitedTo(requestOut);
+					requestOut.flush();
+				} catch (final IOException e) {
+					fail(request.socket, e);
+					throw e;
+				}
+				return request;
+			}
+		}
+
+		private synchronized Socket getSocket() {
+			return socket;
+		}
+
+		/**
+		 * Opens a new socket. Called with the write lock held, but not the connection's monitor.
+		 */
+		private void connect() throws IOException {
+			final Socket newSocket = new Socket();
+			try {
+				newSocket.setTcpNoDelay(true);
+				newSocket.connect(address, connectTimeoutMillis);
+			} catch (final IOException e) {
+				newSocket.close();
+				throw new IOException("Unable to connect to Taggerflow server at " + address, e);
+			}
+
+			final InputStream in = new BufferedInputStream(newSocket.getInputStream(), 1 << 16);
+			synchronized (this) {
+				if (closed) {
+					newSocket.close();
+					throw new IllegalStateException("Taggerflow client is closed");
+				}
+				socket = newSocket;
+				out = new BufferedOutputStream(newSocket.getOutputStream(), 1 << 16);
+			}
+			final Thread reader = new Thread(() -> read(newSocket, in), "taggerflow-" + index);
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		/**
+		 * Reads responses until the socket is closed, completing requests in the order they were sent.
+		 */
+		private void read(final Socket socket, final InputStream in) {
+			try {
+				while (true) {
+					final TaggedSentence first = TaggedSentence.parseDelimitedFrom(in);
+					if (first == null) {
+						throw new IOException("Connection closed by Taggerflow server");
+					}
+
+					final Request request;
+					synchronized (this) {
+						request = pending.peekFirst();
+					}
+					if (request == null || request.socket != socket) {
+						throw new IOException("Unexpected response from Taggerflow server");
+					}
+
+					final List<TaggedSentence> result = new ArrayList<>(request.numberOfSentences);
+					result.add(first);
+					while (result.size() < request.numberOfSentences) {
+						final TaggedSentence next = TaggedSentence.parseDelimitedFrom(in);
+						if (next == null) {
+							throw new IOException("Connection closed by Taggerflow server");
+						}
+						result.add(next);
+					}
+
+					synchronized (this) {
+						// The socket may have failed (e.g. after a timeout) while the response was read, in which case
+						// its requests were already failed and removed.
+						if (this.socket != socket || pending.peekFirst() != request) {
+							return;
+						}
+						pending.removeFirst();
+						pendingSentences -= request.numberOfSentences;
+					}
+					request.result.complete(result);
+				}
+			} catch (final IOException e) {
+				fail(socket, e);
+			}
+		}
+
+		/**
+		 * Closes the socket and fails its outstanding requests, unless it was already replaced. A writer blocked on the
+		 * socket gets an exception when it's closed.
+		 */
+		private synchronized void fail(final Socket failed, final IOException cause) {
+			if (socket != failed || socket == null) {
+				return;
+			}
+
+			try {
+				socket.close();
+			} catch (final IOException e) {
+				// Already broken.
+			}
+			socket = null;
+			out = null;
+			for (final Request request : pending) {
+				request.result.completeExceptionally(cause);
+			}
+			pending.clear();
+			pendingSentences = 0;
+		}
+
+		private synchronized void close() {
+			fail(socket, new IOException("Taggerflow client is closed"));
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		for (final Connection connection : connections) {
+			connection.close();
+		}
+	}
+}
@@ -4,63 +4,54 @@ import com.google.common.base.Preconditions;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.Socket;
 import java.nio.file.Files;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 
-import edu.uw.TaggerflowProtos.TaggedSentence;
 import edu.uw.TaggerflowProtos.TaggingInput;
 import edu.uw.easysrl.main.InputReader;
 import edu.uw.easysrl.main.InputReader.InputWord;
 import edu.uw.easysrl.syntax.grammar.Category;
 
-public class TaggerflowRemoteLSTM extends Tagger {
-	private final Socket socket;
+/**
+ * Supertags using a Taggerflow server, whose address is given as host:port in taggerflow/server.txt in the model
+ * folder. Can be used from multiple threads, whose batches are pipelined over a pool of connections.
+ */
+public class TaggerflowRemoteLSTM extends Tagger implements AutoCloseable {
+	private final static int DEFAULT_CONNECTIONS = 4;
+	private final static int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+	private final static long DEFAULT_REQUEST_TIMEOUT_MILLIS = 60000;
+
+	private final TaggerflowClient client;
 
 	public TaggerflowRemoteLSTM(File modelFolder) throws IOException {
+		this(modelFolder, DEFAULT_CONNECTIONS, DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_REQUEST_TIMEOUT_MILLIS);
+	}
+
+	public TaggerflowRemoteLSTM(File modelFolder, int numberOfConnections, int connectTimeoutMillis,
+			long requestTimeoutMillis) throws IOException {
 		super(null, 0.0, TaggerEmbeddings.loadCategories(new File(modelFolder, "categories")), 0);
 		String server = new String(
 				Files.readAllBytes(new File(new File(modelFolder, "taggerflow"), "server.txt").toPath())).trim();
 		int colonIndex = server.lastIndexOf(':');
 		Preconditions.checkState(colonIndex >= 0, "Invalid server: " + server);
-		try {
-			socket = new Socket(server.substring(0, colonIndex), Integer.parseInt(server.substring(colonIndex + 1)));
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		client = new TaggerflowClient(server.substring(0, colonIndex), Integer.parseInt(server
+				.substring(colonIndex + 1)), numberOfConnections, connectTimeoutMillis, requestTimeoutMillis);
 	}
 
 	@Override
 	public Stream<List<List<ScoredCategory>>> tagBatch(Stream<List<InputWord>> sentences) {
-		try {
-			final TaggingInput input = TaggingInput.newBuilder()
-					.addAllSentence(() -> sentences.map(TaggerflowLSTM::wordsToSentence).iterator()).build();
-			input.writeDelimitedTo(socket.getOutputStream());
-			return input.getSentenceList().stream().map(s -> {
-				try {
-					return TaggedSentence.parseDelimitedFrom(socket.getInputStream());
-				} catch (final IOException e) {
-					throw new RuntimeException(e);
-				}
-			}).map(taggedSentence -> TaggerflowLSTM.getScoredCategories(taggedSentence, lexicalCategories));
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		final TaggingInput input = TaggingInput.newBuilder()
+				.addAllSentence(() -> sentences.map(TaggerflowLSTM::wordsToSentence).iterator()).build();
+		return client.tag(input).stream()
+				.map(taggedSentence -> TaggerflowLSTM.getScoredCategories(taggedSentence, lexicalCategories));
 	}
 
 	@Override
-	protected void finalize() throws Throwable {
-		super.finalize();
-		try {
-			socket.getOutputStream().close();
-			socket.getInputStream().close();
-			socket.close();
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+	public void close() {
+		client.close();
 	}
 
 	@Override
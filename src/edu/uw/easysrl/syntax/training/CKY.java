@@ -108,8 +108,7 @@ class CKY {
 					continue;
 				}
 
-				for (final RuleProduction rule : Combinator.getRules(l.getCategory(), r.getCategory(),
-						Combinator.STANDARD_COMBINATORS)) {
+				for (final RuleProduction rule : Combinator.getStandardRules(l.getCategory(), r.getCategory())) {
 
 					final RuleType leftRuleClass = l.getRuleType();
 					final RuleType ruleType = rule.getRuleType();
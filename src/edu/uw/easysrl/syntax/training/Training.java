@@ -402,8 +402,7 @@ public class Training {
 			final SyntaxTreeNode left = node.getChild(0);
 			final SyntaxTreeNode right = node.getChild(1);
 
-			for (final RuleProduction rule : Combinator.getRules(left.getCategory(), right.getCategory(),
-					Combinator.STANDARD_COMBINATORS)) {
+			for (final RuleProduction rule : Combinator.getStandardRules(left.getCategory(), right.getCategory())) {
 				if (rule.getCategory().equals(node.getCategory())) {
 					for (final BinaryFeature feature : trainingParameters.featureSet.binaryFeatures) {
 						final FeatureKey featureKey = feature.getFeatureKey(node.getCategory(), node.getRuleType(),
@@ -0,0 +1,97 @@
+package edu.uw.easysrl.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * A table of rows of atomic entries, indexed by a pair of small IDs (e.g. the IDs of two categories), which can be read
+ * without locking.
+ *
+ * Rows are added and grown under a lock, and the table is copied when a row changes, so readers never see a partially
+ * built row. Rows grow geometrically, so that a new ID doesn't copy every row each time. IDs of maxID or more aren't
+ * stored, to bound the table's size.
+ */
+public class CopyOnWriteTable<R> {
+	private final static int MIN_ROW_LENGTH = 64;
+
+	private final int maxID;
+	private final ToIntFunction<R> length;
+	// Makes a row of the given length, copying the entries of the old row (which may be null).
+	private final BiFunction<R, Integer, R> grow;
+	private volatile Object[] rows = new Object[0];
+
+	private CopyOnWriteTable(final int maxID, final ToIntFunction<R> length, final BiFunction<R, Integer, R> grow) {
+		this.maxID = maxID;
+		this.length = length;
+		this.grow = grow;
+	}
+
+	/**
+	 * A table of object references, where null means not computed yet.
+	 */
+	public static <T> CopyOnWriteTable<AtomicReferenceArray<T>> ofReferences(final int maxID) {
+		return new CopyOnWriteTable<>(maxID, AtomicReferenceArray::length, (oldRow, newLength) -> {
+			final AtomicReferenceArray<T> result = new AtomicReferenceArray<>(newLength);
+			for (int i = 0; oldRow != null && i < oldRow.length(); i++) {
+				result.set(i, oldRow.get(i));
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * A table of longs, where new entries are filled with emptyValue.
+	 */
+	public static CopyOnWriteTable<AtomicLongArray> ofLongs(final int maxID, final long emptyValue) {
+		return new CopyOnWriteTable<>(maxID, AtomicLongArray::length, (oldRow, newLength) -> {
+			final long[] result = new long[newLength];
+			final int oldLength = oldRow == null ? 0 : oldRow.length();
+			for (int i = 0; i < newLength; i++) {
+				result[i] = i < oldLength ? oldRow.get(i) : emptyValue;
+			}
+			return new AtomicLongArray(result);
+		});
+	}
+
+	/**
+	 * True if entries for the pair can be stored in the table.
+	 */
+	public boolean isStored(final int row, final int column) {
+		return row < maxID && column < maxID;
+	}
+
+	/**
+	 * Returns the row, or null if it doesn't include the column yet.
+	 */
+	public R getRowIfPresent(final int row, final int column) {
+		final R result = get(rows, row);
+		return result != null && column < length.applyAsInt(result) ? result : null;
+	}
+
+	/**
+	 * Returns the row, adding or growing it if needed to include the column.
+	 */
+	public synchronized R getRow(final int row, final int column) {
+		final Object[] table = rows;
+		final R oldRow = get(table, row);
+		final int oldLength = oldRow == null ? 0 : length.applyAsInt(oldRow);
+		if (column < oldLength) {
+			return oldRow;
+		}
+
+		final R newRow = grow.apply(oldRow, Math.min(maxID, Math.max(column + 1, Math.max(MIN_ROW_LENGTH,
+				2 * oldLength))));
+		final Object[] newTable = Arrays.copyOf(table, Math.max(table.length, row + 1));
+		newTable[row] = newRow;
+		rows = newTable;
+		return newRow;
+	}
+
+	@SuppressWarnings("unchecked")
+	private R get(final Object[] table, final int row) {
+		return row < table.length ? (R) table[row] : null;
+	}
+}
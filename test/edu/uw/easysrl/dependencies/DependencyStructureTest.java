@@ -0,0 +1,173 @@
+package edu.uw.easysrl.dependencies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.CharStreams;
+
+import edu.uw.easysrl.syntax.grammar.Category;
+import edu.uw.easysrl.syntax.grammar.Combinator;
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleProduction;
+
+/**
+ * Checks the results of combining dependency structures against dependency_structures.txt, which was generated by
+ * describeCombinations() with the implementation of apply/compose from before they were changed to avoid allocation.
+ */
+public class DependencyStructureTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	final static String[] MARKEDUP = { "NP_1/N_1", "N_1/N_1", "(N_1\\N_1)/NP_2", "(NP_1\\NP_1)/NP_2",
+			"(S[dcl]\\NP_1)/NP_2", "((S[dcl]\\NP_1)/PP_2)/NP_3", "(S[dcl]\\NP_1)/(S[to]_2\\NP_1)_2",
+			"((S[dcl]\\NP_1)/(S[to]_2\\NP_3)_2)/NP_3", "(S[to]_1\\NP_2)_1/(S[b]_1\\NP_2)_1", "(S[b]\\NP_1)/NP_2",
+			"((S_1\\NP_2)_1\\(S_1\\NP_2)_1)/NP_3", "(S_1\\NP_2)_1\\(S_1\\NP_2)_1", "PP/NP_1",
+			"(NP_1\\NP_1)/(S[dcl]_2\\NP_1)_2", "(S[dcl]\\NP_1)/(S[adj]_2\\NP_1)_2", "S[adj]\\NP_1", "S_1/S_1",
+			"(S[dcl]\\NP_1)/S[dcl]_2", "NP_1\\NP_1", "S[dcl]/NP_1", "(S[dcl]\\NP_1)/PP_2", "PP/(S[ng]_1\\NP_2)_1",
+			"S[ng]\\NP_1", "conj" };
+
+	private final static String[] CATEGORIES = { "N", "NP", "NP/N", "N/N", "(N\\N)/NP", "(NP\\NP)/NP",
+			"(S[dcl]\\NP)/NP", "((S[dcl]\\NP)/PP)/NP", "(S[dcl]\\NP)/(S[to]\\NP)", "((S[dcl]\\NP)/(S[to]\\NP))/NP",
+			"(S[to]\\NP)/(S[b]\\NP)", "(S[b]\\NP)/NP", "((S\\NP)\\(S\\NP))/NP", "(S\\NP)\\(S\\NP)", "PP/NP",
+			"(NP\\NP)/(S[dcl]\\NP)", "(S[dcl]\\NP)/(S[adj]\\NP)", "S[adj]\\NP", "S[dcl]\\NP", "S[dcl]", "S/S",
+			"(S[dcl]\\NP)/S[dcl]", "NP\\NP", "S[dcl]/NP", "(S[dcl]\\NP)/PP", "PP/(S[ng]\\NP)", "S[ng]\\NP", "conj",
+			"," };
+
+	private final static String[] PREPOSITIONS = { "with", "to", "in" };
+
+	// DependencyStructure.toString() prints its unresolved dependencies as a HashSet, so they're sorted to compare them.
+	private final static Pattern UNRESOLVED = Pattern.compile("^(\\S+) \\[(.*?)\\] (.*)$");
+
+	@Before
+	public void loadMarkedUp() throws IOException {
+		final File markedup = folder.newFile("markedup");
+		Files.write(markedup.toPath(), Arrays.asList(MARKEDUP), StandardCharsets.UTF_8);
+		Coindexation.parseMarkedUpFile(markedup);
+	}
+
+	@Test
+	public void testCombinationsMatchPreviousImplementation() throws IOException {
+		final List<String> expected = readExpected();
+		final List<String> actual = describeCombinations();
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i), actual.get(i));
+		}
+	}
+
+	@Test
+	public void testResultsAreShared() {
+		final List<UnlabelledDependency> dependencies = new ArrayList<>();
+		final DependencyStructure verb = DependencyStructure.make(Category.valueOf("(S[dcl]\\NP)/NP"), "saw", 1);
+		final DependencyStructure object = DependencyStructure.make(Category.NP, "men", 2);
+		assertSame(verb.apply(object, dependencies), verb.apply(object, dependencies));
+	}
+
+	private static List<String> readExpected() throws IOException {
+		try (InputStream in = DependencyStructureTest.class.getResourceAsStream("dependency_structures.txt")) {
+			return CharStreams.readLines(new InputStreamReader(in, StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Combines the lexical dependency structures for every pair of categories with the standard combinators, and then
+	 * combines each result with every lexical structure again, describing each result on one line.
+	 */
+	static List<String> describeCombinations() {
+		final List<Category> categories = new ArrayList<>();
+		final List<String> words = new ArrayList<>();
+		for (final String category : CATEGORIES) {
+			for (final String word : category.startsWith("PP/") ? PREPOSITIONS : new String[] { "word" }) {
+				categories.add(Category.valueOf(category));
+				words.add(word);
+			}
+		}
+
+		final List<String> result = new ArrayList<>();
+		// Results for words 0-1 and 1-2, which are combined with a word on their right and left respectively.
+		final List<Category> leftCategories = new ArrayList<>();
+		final List<DependencyStructure> leftStructures = new ArrayList<>();
+		final List<Category> rightCategories = new ArrayList<>();
+		final List<DependencyStructure> rightStructures = new ArrayList<>();
+		for (int i = 0; i < categories.size(); i++) {
+			for (int j = 0; j < categories.size(); j++) {
+				combine(categories.get(i), make(categories, words, i, 0), categories.get(j), make(categories, words,
+						j, 1), result, leftCategories, leftStructures);
+				combine(categories.get(i), make(categories, words, i, 1), categories.get(j), make(categories, words,
+						j, 2), new ArrayList<>(), rightCategories, rightStructures);
+			}
+		}
+
+		for (int i = 0; i < leftStructures.size(); i++) {
+			for (int j = 0; j < categories.size(); j++) {
+				combine(leftCategories.get(i), leftStructures.get(i), categories.get(j), make(categories, words, j, 2),
+						result, new ArrayList<>(), new ArrayList<>());
+			}
+		}
+		for (int i = 0; i < rightStructures.size(); i++) {
+			for (int j = 0; j < categories.size(); j++) {
+				combine(categories.get(j), make(categories, words, j, 0), rightCategories.get(i), rightStructures
+						.get(i), result, new ArrayList<>(), new ArrayList<>());
+			}
+		}
+
+		return result;
+	}
+
+	private static DependencyStructure make(final List<Category> categories, final List<String> words,
+			final int index, final int sentencePosition) {
+		return DependencyStructure.make(categories.get(index), words.get(index), sentencePosition);
+	}
+
+	private static void combine(final Category left, final DependencyStructure leftStructure, final Category right,
+			final DependencyStructure rightStructure, final List<String> result, final List<Category> resultCategories,
+			final List<DependencyStructure> resultStructures) {
+		for (final RuleProduction rule : Combinator.getRules(left, right, Combinator.STANDARD_COMBINATORS)) {
+			final List<UnlabelledDependency> dependencies = new ArrayList<>();
+			final DependencyStructure combined = rule.getCombinator().apply(leftStructure, rightStructure,
+					dependencies);
+			final List<String> dependencyStrings = new ArrayList<>();
+			for (final UnlabelledDependency dependency : dependencies) {
+				dependencyStrings.add(dependency.getCategory() + " " + dependency);
+			}
+			Collections.sort(dependencyStrings);
+
+			result.add(left + " " + leftStructure.getArbitraryHead() + " + " + right + " "
+					+ rightStructure.getArbitraryHead() + " " + rule.getRuleType() + " " + rule.getCategory() + " => "
+					+ (combined == null ? "null" : canonical(combined)) + " " + dependencyStrings);
+			if (combined != null) {
+				resultCategories.add(rule.getCategory());
+				resultStructures.add(combined);
+			}
+		}
+	}
+
+	private static String canonical(final DependencyStructure structure) {
+		final String string = structure.toString();
+		final Matcher matcher = UNRESOLVED.matcher(string);
+		if (!matcher.matches()) {
+			return string;
+		}
+		final List<String> unresolved = matcher.group(2).isEmpty() ? new ArrayList<>() : new ArrayList<>(
+				Arrays.asList(matcher.group(2).split(", ")));
+		Collections.sort(unresolved);
+		return matcher.group(1) + " " + unresolved + " " + matcher.group(3);
+	}
+}
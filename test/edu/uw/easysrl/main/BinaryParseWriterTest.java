@@ -0,0 +1,156 @@
+package edu.uw.easysrl.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.uw.easysrl.dependencies.ResolvedDependency;
+import edu.uw.easysrl.dependencies.SRLFrame.SRLLabel;
+import edu.uw.easysrl.dependencies.UnlabelledDependency;
+import edu.uw.easysrl.main.BinaryParseReader.Parse;
+import edu.uw.easysrl.main.BinaryParseReader.ParsedSentence;
+import edu.uw.easysrl.main.InputReader.InputWord;
+import edu.uw.easysrl.syntax.grammar.Category;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeLabelling;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeLeaf;
+import edu.uw.easysrl.syntax.parser.Parser;
+import edu.uw.easysrl.syntax.parser.ParserAStar;
+import edu.uw.easysrl.syntax.parser.SRLParser;
+import edu.uw.easysrl.syntax.parser.SRLParser.CCGandSRLparse;
+import edu.uw.easysrl.syntax.parser.SRLParser.PipelineSRLParser;
+import edu.uw.easysrl.syntax.parser.ToyModel;
+import edu.uw.easysrl.syntax.tagger.POSTagger;
+import edu.uw.easysrl.syntax.training.PipelineTrainer.LabelClassifier;
+
+public class BinaryParseWriterTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File modelFolder;
+
+	@Before
+	public void writeModel() throws IOException {
+		modelFolder = folder.getRoot();
+		ToyModel.write(modelFolder);
+	}
+
+	/**
+	 * Parses with a few different labels, so that the label dictionary is exercised.
+	 */
+	private SRLParser makeParser() throws IOException {
+		final Parser parser = new ParserAStar.Builder(modelFolder).useSupertaggedInput().allowUnseenRules(true)
+				.nBest(3).nbestBeam(1e-9).build();
+		final LabelClassifier classifier = new LabelClassifier(null) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public SRLLabel classify(final UnlabelledDependency dep, final List<InputWord> sentence) {
+				return SRLLabel.fromString(dep.getArgNumber() == 1 ? "ARG0" : dep.getArgNumber() == 2 ? "ARG1"
+						: "ARGM-LOC");
+			}
+		};
+		final POSTagger posTagger = new POSTagger() {
+			@Override
+			public List<InputWord> tag(final List<InputWord> words) {
+				return words;
+			}
+		};
+		return new PipelineSRLParser(parser, classifier, posTagger);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		final List<CCGandSRLparse> parses = makeParser().parseTokens(ToyModel.makeInput());
+		assertTrue(parses.size() > 1);
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (BinaryParseWriter writer = new BinaryParseWriter(bytes, false)) {
+			writer.write(parses, 1);
+			// A failed parse, and then the same parses again, which reuse the dictionary entries from the first.
+			writer.write(null, 2);
+			writer.write(parses, 3);
+		}
+
+		try (BinaryParseReader reader = new BinaryParseReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+			checkSentence(reader.next(), 1, parses);
+			checkSentence(reader.next(), 2, new ArrayList<>());
+			checkSentence(reader.next(), 3, parses);
+			assertNull(reader.next());
+		}
+	}
+
+	private static void checkSentence(final ParsedSentence sentence, final int id,
+			final List<CCGandSRLparse> expected) {
+		assertEquals(id, sentence.getId());
+		assertEquals(expected.size(), sentence.getParses().size());
+		for (int i = 0; i < expected.size(); i++) {
+			checkParse(expected.get(i), sentence.getParses().get(i));
+		}
+	}
+
+	private static void checkParse(final CCGandSRLparse expected, final Parse actual) {
+		final List<SyntaxTreeNodeLeaf> leaves = expected.getCcgParse().getLeaves();
+		assertEquals(leaves.size(), actual.getNumberOfWords());
+		final List<Category> lexicalCategories = new ArrayList<>();
+		for (int i = 0; i < leaves.size(); i++) {
+			assertEquals(leaves.get(i).getWord(), actual.getWord(i));
+			assertEquals(leaves.get(i).getPos(), actual.getPos(i));
+			assertEquals(leaves.get(i).getNER(), actual.getNER(i));
+			lexicalCategories.add(leaves.get(i).getCategory());
+		}
+		assertEquals(lexicalCategories, actual.getLexicalCategories());
+
+		final int[] node = { 0 };
+		checkNode(expected.getCcgParse(), actual, node);
+		assertEquals(actual.getNumberOfNodes(), node[0]);
+
+		final Set<String> expectedDependencies = new HashSet<>();
+		for (final ResolvedDependency dep : expected.getDependencyParse()) {
+			expectedDependencies.add(dep.getHead() + " " + dep.getArgNumber() + " " + dep.getArgument() + " "
+					+ dep.getSemanticRole());
+		}
+		final Set<String> actualDependencies = new HashSet<>();
+		for (int i = 0; i < actual.getNumberOfDependencies(); i++) {
+			actualDependencies.add(actual.getHead(i) + " " + actual.getArgNumber(i) + " " + actual.getArgument(i) + " "
+					+ actual.getLabel(i));
+		}
+		assertTrue(expectedDependencies.size() > 0);
+		assertEquals(expectedDependencies, actualDependencies);
+	}
+
+	/**
+	 * Checks a subtree against the nodes starting from node[0], in pre-order.
+	 */
+	private static void checkNode(SyntaxTreeNode expected, final Parse actual, final int[] node) {
+		while (expected instanceof SyntaxTreeNodeLabelling) {
+			expected = expected.getChild(0);
+		}
+
+		final int index = node[0]++;
+		assertEquals(expected.getCategory(), actual.getCategory(index));
+		assertEquals(expected.getRuleType(), actual.getRuleType(index));
+		assertEquals(expected.getChildren().size(), actual.getNumberOfChildren(index));
+		assertEquals(expected.isLeaf(), actual.isLeaf(index));
+		if (expected.getChildren().size() == 2) {
+			assertEquals(expected.getHeadIsLeft(), actual.getHeadIsLeft(index));
+		}
+		for (final SyntaxTreeNode child : expected.getChildren()) {
+			checkNode(child, actual, node);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package edu.uw.easysrl.syntax.grammar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleProduction;
+import edu.uw.easysrl.syntax.grammar.Combinator.RuleTable;
+import edu.uw.easysrl.syntax.parser.AbstractParser;
+import edu.uw.easysrl.syntax.parser.AbstractParser.UnaryRule;
+import edu.uw.easysrl.syntax.parser.ToyModel;
+import edu.uw.easysrl.syntax.tagger.TaggerEmbeddings;
+
+public class GrammarClosureTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<Combinator> combinators = new ArrayList<>(Combinator.STANDARD_COMBINATORS);
+	private List<Category> lexicalCategories;
+	private final Multimap<Category, Category> unaryRules = HashMultimap.create();
+
+	@Before
+	public void loadModel() throws IOException {
+		final File modelFolder = folder.newFolder("model");
+		ToyModel.write(modelFolder);
+		lexicalCategories = TaggerEmbeddings.loadCategories(new File(modelFolder, "categories"));
+		for (final Map.Entry<Category, UnaryRule> entry : AbstractParser.loadUnaryRules(
+				new File(modelFolder, "unaryRules")).entries()) {
+			unaryRules.put(entry.getKey(), entry.getValue().getCategory());
+		}
+	}
+
+	/**
+	 * Saves and reloads a closure, and checks the rules for every pair of closed categories against
+	 * Combinator.getRules(). Categories outside the closure return null, and RuleTable falls back to computing them.
+	 */
+	@Test
+	public void testSaveAndLoad() throws IOException {
+		final File file = folder.newFile(GrammarClosure.FILE_NAME);
+		GrammarClosure.compute(lexicalCategories, unaryRules, combinators, 1).save(file);
+		final GrammarClosure closure = GrammarClosure.load(file, combinators);
+		assertNotNull(closure);
+
+		// The saved categories, with the closed ones first.
+		final List<Category> closed = new ArrayList<>();
+		final List<Category> open = new ArrayList<>();
+		final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		int header = 0;
+		while (!lines.get(header).startsWith("CATEGORIES")) {
+			header++;
+		}
+		final int numberOfCategories = Integer.valueOf(lines.get(header).split(" ")[1]);
+		final int numberOfClosedCategories = Integer.valueOf(lines.get(header).split(" ")[2]);
+		for (int i = 0; i < numberOfCategories; i++) {
+			(i < numberOfClosedCategories ? closed : open).add(Category.valueOf(lines.get(header + 1 + i)));
+		}
+		assertTrue(closed.containsAll(lexicalCategories));
+		assertTrue("Expected results beyond the maximum arity", open.size() > 0);
+
+		int numberOfRules = 0;
+		for (final Category left : closed) {
+			for (final Category right : closed) {
+				final List<RuleProduction> expected = Combinator.getRules(left, right, combinators);
+				assertEquals(left + " " + right, describe(expected), describe(closure.getRules(left, right)));
+				numberOfRules += expected.size();
+			}
+		}
+		assertTrue(numberOfRules > 0);
+
+		final RuleTable ruleTable = new RuleTable(combinators, closure);
+		final Category outside = Category.valueOf("((S[dcl]\\NP)/NP)/PP");
+		for (final Category category : open) {
+			assertNull(closure.getRules(closed.get(0), category));
+			assertNull(closure.getRules(category, closed.get(0)));
+		}
+		for (final Category category : closed) {
+			assertNull(closure.getRules(outside, category));
+			assertNull(closure.getRules(category, outside));
+			assertEquals(describe(Combinator.getRules(category, outside, combinators)), describe(ruleTable.getRules(
+					category, outside)));
+		}
+	}
+
+	@Test
+	public void testLoadWithDifferentCombinators() throws IOException {
+		final File file = folder.newFile(GrammarClosure.FILE_NAME);
+		GrammarClosure.compute(lexicalCategories, unaryRules, combinators, 1).save(file);
+		assertNull(GrammarClosure.load(file, combinators.subList(1, combinators.size())));
+	}
+
+	private static List<String> describe(final List<RuleProduction> rules) {
+		final List<String> result = new ArrayList<>();
+		for (final RuleProduction rule : rules) {
+			result.add(rule.getRuleType() + " " + rule.getCategory() + " " + rule.isHeadIsLeft());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,115 @@
+package edu.uw.easysrl.syntax.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import edu.uw.easysrl.syntax.grammar.Category;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeLeaf;
+import edu.uw.easysrl.syntax.model.SRLFactoredModel.BinaryFeatureScores;
+import edu.uw.easysrl.syntax.model.feature.Feature.BinaryFeature;
+import edu.uw.easysrl.syntax.model.feature.Feature.FeatureKey;
+import edu.uw.easysrl.syntax.model.feature.FeatureWeights;
+
+public class BinaryFeatureScoresTest {
+	private final static int THREADS = 8;
+
+	private static AgendaItem makeItem(final Category category) {
+		return new AgendaItem(new SyntaxTreeNodeLeaf("word", null, null, category, 0, false), 0.0, 0.0, 0, 1, false);
+	}
+
+	private static double[][] makeExpectedScores(final List<Category> categories, final BinaryFeature feature,
+			final Map<FeatureKey, Integer> featureToIndex, final List<Double> weights) {
+		final Random random = new Random(0);
+		final double[][] result = new double[categories.size()][categories.size()];
+		for (int i = 0; i < categories.size(); i++) {
+			for (int j = 0; j < categories.size(); j++) {
+				// Weights are stored as floats.
+				result[i][j] = (float) random.nextGaussian();
+				featureToIndex.put(feature.getFeatureKey(null, null, categories.get(i), null, 0, categories.get(j),
+						null, 0, null), weights.size());
+				weights.add(result[i][j]);
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void testConcurrentScores() throws Exception {
+		final List<Category> categories = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			categories.add(Category.valueOf("S[concurrent" + i + "]"));
+		}
+		final Collection<BinaryFeature> features = BinaryFeature.getFeatures();
+		final BinaryFeature feature = features.iterator().next();
+		final Map<FeatureKey, Integer> featureToIndex = new HashMap<>();
+		final List<Double> weights = new ArrayList<>();
+		final double[][] expected = makeExpectedScores(categories, feature, featureToIndex, weights);
+
+		// Start with an empty table, so that the threads race to add and grow rows.
+		final BinaryFeatureScores scores = new BinaryFeatureScores(features, new FeatureWeights(featureToIndex,
+				weights.stream().mapToDouble(Double::doubleValue).toArray()), Collections.emptyList());
+		final List<AgendaItem> items = new ArrayList<>();
+		for (final Category category : categories) {
+			items.add(makeItem(category));
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final List<Future<?>> results = new ArrayList<>();
+			for (int thread = 0; thread < THREADS; thread++) {
+				final Random random = new Random(thread);
+				results.add(executor.submit(() -> {
+					for (int k = 0; k < 4 * categories.size() * categories.size(); k++) {
+						final int i = random.nextInt(categories.size());
+						final int j = random.nextInt(categories.size());
+						assertEquals(expected[i][j], scores.getScore(items.get(i), items.get(j), null), 0.0);
+					}
+				}));
+			}
+			for (final Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testCategoriesWithLargeIDs() {
+		final List<Category> categories = new ArrayList<>();
+		while (Category.numberOfCategories() <= 2100) {
+			categories.add(Category.valueOf("S[large" + categories.size() + "]"));
+		}
+		final List<Category> sample = new ArrayList<>();
+		sample.add(categories.get(0));
+		sample.add(categories.get(categories.size() - 1));
+
+		final Collection<BinaryFeature> features = BinaryFeature.getFeatures();
+		final Map<FeatureKey, Integer> featureToIndex = new HashMap<>();
+		final List<Double> weights = new ArrayList<>();
+		final double[][] expected = makeExpectedScores(sample, features.iterator().next(), featureToIndex, weights);
+		final BinaryFeatureScores scores = new BinaryFeatureScores(features, new FeatureWeights(featureToIndex,
+				weights.stream().mapToDouble(Double::doubleValue).toArray()), sample);
+
+		for (int repeat = 0; repeat < 2; repeat++) {
+			for (int i = 0; i < sample.size(); i++) {
+				for (int j = 0; j < sample.size(); j++) {
+					assertEquals(expected[i][j], scores.getScore(makeItem(sample.get(i)), makeItem(sample.get(j)),
+							null), 0.0);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package edu.uw.easysrl.syntax.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.util.Util.Scored;
+
+public class ChartHypergraphTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File modelFolder;
+
+	@Before
+	public void writeModel() throws IOException {
+		modelFolder = folder.getRoot();
+		ToyModel.write(modelFolder);
+	}
+
+	private List<Scored<SyntaxTreeNode>> parse(final int nbest, final boolean lazy) {
+		return new ParserAStar.Builder(modelFolder).useSupertaggedInput().allowUnseenRules(true).nBest(nbest)
+				.nbestBeam(1e-9).lazyNbest(lazy).build().doParsing(ToyModel.makeInput());
+	}
+
+	/**
+	 * The toy sentence has 8 parses, some with tied scores.
+	 */
+	@Test
+	public void testLazyNbestMatchesEagerNbest() {
+		for (final int nbest : new int[] { 2, 3, 5, 8, 20 }) {
+			final List<Scored<SyntaxTreeNode>> eager = parse(nbest, false);
+			final List<Scored<SyntaxTreeNode>> lazy = parse(nbest, true);
+			assertEquals(Math.min(nbest, 8), eager.size());
+			assertEquals(eager.size(), lazy.size());
+			for (int i = 0; i < eager.size(); i++) {
+				assertEquals(eager.get(i).getScore(), lazy.get(i).getScore(), 1e-9);
+				if (i > 0) {
+					assertTrue(lazy.get(i).getScore() <= lazy.get(i - 1).getScore() + 1e-9);
+				}
+			}
+			// Parses with tied scores can come in either order.
+			assertEquals(describe(eager), describe(lazy));
+		}
+	}
+
+	/**
+	 * Parses with their scores, sorted by score and then by the parse, ignoring differences in rounding.
+	 */
+	private static List<String> describe(final List<Scored<SyntaxTreeNode>> parses) {
+		final List<String> result = new ArrayList<>();
+		for (final Scored<SyntaxTreeNode> parse : parses) {
+			result.add(String.format("%.6f %s", -parse.getScore(), parse.getObject()));
+		}
+		Collections.sort(result);
+		return result;
+	}
+}
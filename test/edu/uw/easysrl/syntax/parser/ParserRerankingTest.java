@@ -0,0 +1,127 @@
+package edu.uw.easysrl.syntax.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.uw.easysrl.main.InputReader.InputToParser;
+import edu.uw.easysrl.syntax.grammar.Category;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode;
+import edu.uw.easysrl.syntax.grammar.SyntaxTreeNode.SyntaxTreeNodeLabelling;
+import edu.uw.easysrl.syntax.model.AgendaItem;
+import edu.uw.easysrl.syntax.model.Model;
+import edu.uw.easysrl.syntax.model.Model.ModelFactory;
+import edu.uw.easysrl.syntax.model.SupertagFactoredModel;
+import edu.uw.easysrl.syntax.parser.AbstractParser.UnaryRule;
+import edu.uw.easysrl.util.Util.Scored;
+
+public class ParserRerankingTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File modelFolder;
+
+	@Before
+	public void writeModel() throws IOException {
+		modelFolder = folder.getRoot();
+		ToyModel.write(modelFolder);
+	}
+
+	/**
+	 * Like the joint model, wraps every new node in a SyntaxTreeNodeLabelling after the parser has checked it.
+	 */
+	private static class LabellingModelFactory extends ModelFactory {
+		private final Collection<Category> lexicalCategories;
+
+		private LabellingModelFactory(final Collection<Category> lexicalCategories) {
+			this.lexicalCategories = lexicalCategories;
+		}
+
+		@Override
+		public Model make(final InputToParser sentence) {
+			return new SupertagFactoredModel(sentence.getInputSupertags(), true) {
+				@Override
+				public AgendaItem combineNodes(final AgendaItem leftChild, final AgendaItem rightChild,
+						final SyntaxTreeNode node) {
+					return label(super.combineNodes(leftChild, rightChild, node));
+				}
+
+				@Override
+				public AgendaItem unary(final AgendaItem child, final SyntaxTreeNode result, final UnaryRule rule) {
+					return label(super.unary(child, result, rule));
+				}
+			};
+		}
+
+		private static AgendaItem label(final AgendaItem item) {
+			return new AgendaItem(new SyntaxTreeNodeLabelling(item.getParse(), Collections.emptyList(),
+					Collections.emptyList()), item.getInsideScore(), item.getOutsideScoreUpperbound(),
+					item.getStartOfSpan(), item.getSpanLength(), true);
+		}
+
+		@Override
+		public Collection<Category> getLexicalCategories() {
+			return lexicalCategories;
+		}
+
+		@Override
+		public boolean isUsingDependencies() {
+			return true;
+		}
+	}
+
+	@Test
+	public void testRerankingWithLabellingModel() {
+		final Parser baseParser = new ParserAStar.Builder(modelFolder).useSupertaggedInput().allowUnseenRules(true)
+				.nBest(2).nbestBeam(1e-9).build();
+		final List<Scored<SyntaxTreeNode>> candidates = baseParser.doParsing(ToyModel.makeInput());
+		assertEquals(2, candidates.size());
+
+		final ParserAStar.Builder builder = new ParserReranking.Builder(modelFolder, baseParser);
+		final Parser reranker = builder.modelFactory(new LabellingModelFactory(builder.getLexicalCategories()))
+				.useSupertaggedInput().allowUnseenRules(true).build();
+		final List<Scored<SyntaxTreeNode>> result = reranker.doParsing(ToyModel.makeInput());
+
+		assertNotNull(result);
+		assertEquals(1, result.size());
+		boolean isCandidate = false;
+		for (final Scored<SyntaxTreeNode> candidate : candidates) {
+			isCandidate = isCandidate || sameStructure(candidate.getObject(), result.get(0).getObject());
+		}
+		assertTrue("The reranked parse should be one of the candidates", isCandidate);
+	}
+
+	private static boolean sameStructure(final SyntaxTreeNode node1, final SyntaxTreeNode node2) {
+		final SyntaxTreeNode unlabelled1 = unlabelled(node1);
+		final SyntaxTreeNode unlabelled2 = unlabelled(node2);
+		if (unlabelled1.getCategory() != unlabelled2.getCategory()
+				|| unlabelled1.getRuleType() != unlabelled2.getRuleType()
+				|| unlabelled1.getChildren().size() != unlabelled2.getChildren().size()) {
+			return false;
+		}
+		for (int i = 0; i < unlabelled1.getChildren().size(); i++) {
+			if (!sameStructure(unlabelled1.getChild(i), unlabelled2.getChild(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static SyntaxTreeNode unlabelled(SyntaxTreeNode node) {
+		while (node instanceof SyntaxTreeNodeLabelling) {
+			node = node.getChild(0);
+		}
+		return node;
+	}
+}
@@ -0,0 +1,55 @@
+package edu.uw.easysrl.syntax.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.uw.easysrl.main.InputReader.InputToParser;
+import edu.uw.easysrl.main.InputReader.InputWord;
+import edu.uw.easysrl.syntax.grammar.Category;
+import edu.uw.easysrl.syntax.tagger.Tagger.ScoredCategory;
+
+/**
+ * A tiny model for tests, which parses supertagged input. Use with ParserAStar.Builder's useSupertaggedInput() and
+ * allowUnseenRules(true).
+ */
+public class ToyModel {
+	/**
+	 * Writes the model's categories, markedup and unary rules files to a folder.
+	 */
+	public static void write(final File modelFolder) throws IOException {
+		write(modelFolder, "categories", "N", "NP", "NP/N", "(S[dcl]\\NP)/NP", "S[dcl]\\NP", "(S\\NP)\\(S\\NP)",
+				"(NP\\NP)/NP", "((S\\NP)\\(S\\NP))/NP");
+		write(modelFolder, "markedup", "(S[dcl]\\NP_1)/NP_2", "(NP_1\\NP_1)/NP_2",
+				"((S_1\\NP_2)_1\\(S_1\\NP_2)_1)/NP_3", "NP_1/N_1");
+		write(modelFolder, "unaryRules", "N NP");
+	}
+
+	private static void write(final File modelFolder, final String file, final String... lines) throws IOException {
+		Files.write(new File(modelFolder, file).toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * "I saw men with telescopes", with an ambiguous prepositional phrase attachment.
+	 */
+	public static InputToParser makeInput() {
+		final String[][] wordsAndTags = { { "I", "PRP", "NP" }, { "saw", "VBD", "(S[dcl]\\NP)/NP" },
+				{ "men", "NNS", "NP", "N" }, { "with", "IN", "(NP\\NP)/NP", "((S\\NP)\\(S\\NP))/NP" },
+				{ "telescopes", "NNS", "NP", "N" } };
+		final List<InputWord> words = new ArrayList<>();
+		final List<List<ScoredCategory>> tags = new ArrayList<>();
+		for (final String[] wordAndTags : wordsAndTags) {
+			words.add(new InputWord(wordAndTags[0], wordAndTags[1], "O"));
+			final List<ScoredCategory> tagsForWord = new ArrayList<>();
+			for (int i = 2; i < wordAndTags.length; i++) {
+				tagsForWord.add(new ScoredCategory(Category.valueOf(wordAndTags[i]), -0.1 * (i - 1)));
+			}
+			tags.add(tagsForWord);
+		}
+		return new InputToParser(words, null, tags, true);
+	}
+}
@@ -0,0 +1,293 @@
+package edu.uw.easysrl.syntax.tagger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+import edu.uw.TaggerflowProtos.TaggedSentence;
+import edu.uw.TaggerflowProtos.TaggedToken;
+import edu.uw.TaggerflowProtos.TaggingInput;
+import edu.uw.TaggerflowProtos.TaggingInputSentence;
+
+public class TaggerflowClientTest {
+	private final static int THREADS = 8;
+
+	/**
+	 * Stands in for a Taggerflow server. It answers each batch in order with one TaggedSentence per sentence, echoing
+	 * the words. Batches whose first word is SLOW are answered after a delay, and the connection is closed without an
+	 * answer the first time a batch starting with DROP is seen.
+	 *
+	 * The server's socket buffers are small, and it doesn't read the next batch until it has written a response, so
+	 * large pipelined batches fill the buffers in both directions.
+	 */
+	private static class StandInServer implements AutoCloseable {
+		private final static long SLOW_MILLIS = 2000;
+		private final static int BUFFER_BYTES = 8192;
+
+		private final ServerSocket serverSocket;
+		private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+		private final Set<String> dropped = ConcurrentHashMap.newKeySet();
+		private final AtomicInteger connections = new AtomicInteger();
+		// Set if a batch arrived on a connection before the previous one was answered.
+		private final AtomicBoolean pipelined = new AtomicBoolean();
+
+		private StandInServer() throws IOException {
+			serverSocket = new ServerSocket();
+			serverSocket.setReceiveBufferSize(BUFFER_BYTES);
+			serverSocket.bind(new InetSocketAddress(0));
+			final Thread acceptor = new Thread(() -> {
+				try {
+					while (true) {
+						final Socket socket = serverSocket.accept();
+						socket.setSendBufferSize(BUFFER_BYTES);
+						connections.incrementAndGet();
+						sockets.add(socket);
+						final Thread thread = new Thread(() -> serve(socket));
+						thread.setDaemon(true);
+						thread.start();
+					}
+				} catch (final IOException e) {
+					// Closed.
+				}
+			});
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+
+		private int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		private void serve(final Socket socket) {
+			try {
+				final InputStream in = new BufferedInputStream(socket.getInputStream());
+				final OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+				while (true) {
+					final TaggingInput input = TaggingInput.parseDelimitedFrom(in);
+					if (input == null) {
+						return;
+					}
+					if (in.available() > 0) {
+						pipelined.set(true);
+					}
+
+					final String first = input.getSentence(0).getWordCount() == 0 ? "" : input.getSentence(0)
+							.getWord(0);
+					if (first.equals("SLOW")) {
+						Thread.sleep(SLOW_MILLIS);
+					} else if (first.startsWith("DROP") && dropped.add(first)) {
+						return;
+					}
+					// Give requests a chance to queue up behind this one.
+					Thread.sleep(2);
+
+					for (final TaggingInputSentence sentence : input.getSentenceList()) {
+						final TaggedSentence.Builder result = TaggedSentence.newBuilder();
+						for (final String word : sentence.getWordList()) {
+							result.addTokenBuilder().setWord(word).addScoreBuilder().setIndex(word.length())
+									.setValue(1f);
+						}
+						result.build().writeDelimitedTo(out);
+					}
+					out.flush();
+				}
+			} catch (final IOException | InterruptedException e) {
+				// Closed.
+			} finally {
+				sockets.remove(socket);
+				try {
+					socket.close();
+				} catch (final IOException e) {
+					// Already closed.
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			serverSocket.close();
+			for (final Socket socket : sockets) {
+				socket.close();
+			}
+		}
+	}
+
+	private StandInServer server;
+
+	@Before
+	public void startServer() throws IOException {
+		server = new StandInServer();
+	}
+
+	@After
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	private static TaggingInput makeBatch(final Random random, final String firstWord) {
+		final TaggingInput.Builder result = TaggingInput.newBuilder();
+		final int numberOfSentences = 1 + random.nextInt(5);
+		for (int i = 0; i < numberOfSentences; i++) {
+			final TaggingInputSentence.Builder sentence = result.addSentenceBuilder();
+			final int length = 1 + random.nextInt(8);
+			for (int j = 0; j < length; j++) {
+				sentence.addWord(i == 0 && j == 0 && firstWord != null ? firstWord : "w" + random.nextInt(100000));
+			}
+		}
+		return result.build();
+	}
+
+	private static void checkResult(final TaggingInput input, final List<TaggedSentence> result) {
+		assertEquals(input.getSentenceCount(), result.size());
+		for (int i = 0; i < result.size(); i++) {
+			final List<String> words = new ArrayList<>();
+			for (final TaggedToken token : result.get(i).getTokenList()) {
+				words.add(token.getWord());
+			}
+			assertEquals(input.getSentence(i).getWordList(), words);
+		}
+	}
+
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try (TaggerflowClient client = new TaggerflowClient("localhost", server.getPort(), 2, 1000, 5000)) {
+			final List<Future<?>> results = new ArrayList<>();
+			for (int thread = 0; thread < THREADS; thread++) {
+				final Random random = new Random(thread);
+				results.add(executor.submit(() -> {
+					for (int i = 0; i < 100; i++) {
+						final TaggingInput input = makeBatch(random, null);
+						checkResult(input, client.tag(input));
+					}
+				}));
+			}
+			for (final Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(2, server.connections.get());
+		assertTrue("Requests should be pipelined on each connection", server.pipelined.get());
+	}
+
+	/**
+	 * Pipelines batches of long words, whose requests and responses are larger than the socket buffers can hold (up
+	 * to 4MB on Linux), so writers block while the server is busy sending a response. Responses still have to be read
+	 * while a writer is blocked.
+	 */
+	@Test
+	public void testLargePipelinedBatches() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (TaggerflowClient client = new TaggerflowClient("localhost", server.getPort(), 1, 1000, 30000)) {
+			final List<Future<?>> results = new ArrayList<>();
+			for (int thread = 0; thread < 4; thread++) {
+				final Random random = new Random(thread);
+				results.add(executor.submit(() -> {
+					for (int i = 0; i < 2; i++) {
+						final TaggingInput.Builder input = TaggingInput.newBuilder();
+						for (int j = 0; j < 50; j++) {
+							final TaggingInputSentence.Builder sentence = input.addSentenceBuilder();
+							for (int k = 0; k < 20; k++) {
+								sentence.addWord(Strings.repeat("w" + random.nextInt(10), 4000));
+							}
+						}
+						final TaggingInput batch = input.build();
+						checkResult(batch, client.tag(batch));
+					}
+				}));
+			}
+			for (final Future<?> result : results) {
+				result.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, server.connections.get());
+	}
+
+	@Test
+	public void testEmptyBatch() {
+		try (TaggerflowClient client = new TaggerflowClient("localhost", server.getPort(), 1, 1000, 5000)) {
+			assertEquals(Collections.emptyList(), client.tag(TaggingInput.getDefaultInstance()));
+		}
+		assertEquals(0, server.connections.get());
+	}
+
+	@Test
+	public void testReconnectAfterConnectionDropped() {
+		final Random random = new Random(0);
+		try (TaggerflowClient client = new TaggerflowClient("localhost", server.getPort(), 1, 1000, 5000)) {
+			final TaggingInput dropped = makeBatch(random, "DROP");
+			checkResult(dropped, client.tag(dropped));
+			final TaggingInput next = makeBatch(random, null);
+			checkResult(next, client.tag(next));
+		}
+		assertEquals(2, server.connections.get());
+	}
+
+	@Test
+	public void testTimeout() {
+		final Random random = new Random(0);
+		try (TaggerflowClient client = new TaggerflowClient("localhost", server.getPort(), 1, 1000, 200)) {
+			final long start = System.nanoTime();
+			try {
+				client.tag(makeBatch(random, "SLOW"));
+				fail("Expected the request to time out");
+			} catch (final UncheckedIOException e) {
+				assertTrue((System.nanoTime() - start) / 1000000 < StandInServer.SLOW_MILLIS);
+			}
+
+			// The timed out connection is closed, so the late response can't be mistaken for this one's.
+			final TaggingInput next = makeBatch(random, null);
+			checkResult(next, client.tag(next));
+		}
+		assertEquals(2, server.connections.get());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testClosedClient() {
+		final TaggerflowClient client = new TaggerflowClient("localhost", server.getPort(), 1, 1000, 5000);
+		client.close();
+		client.tag(makeBatch(new Random(0), null));
+	}
+
+	@Test(expected = UncheckedIOException.class)
+	public void testServerDown() throws IOException {
+		final int port = server.getPort();
+		server.close();
+		try (TaggerflowClient client = new TaggerflowClient("localhost", port, 1, 500, 500)) {
+			client.tag(makeBatch(new Random(0), null));
+		}
+	}
+}